@@ -0,0 +1,49 @@
+-- Seed data for UserMessageQueryBenchmark.
+-- Run against a database migrated by sms-service (Flyway) and otherwise empty, e.g.
+--   psql -h localhost -U sms -d smsdb -f benchmarks/sql/seed_user_messages.sql
+-- Row count: change the upper bound of generate_series below (20M takes roughly 10 GB with indexes).
+--
+-- Shape:
+--   * ten hot A2P senders +306900000000..+306900000009 send 2% of all traffic;
+--     +306900000001 also receives 0.5% (the "hot" benchmark user)
+--   * +306900000099 is a dormant bulk sender: 2% of the first 1M rows and nothing since,
+--     so its newest messages sit at the old end of the table
+--   * everyone else sends from 1M numbers +30691xxxxxxx and receives on 2M numbers +30692xxxxxxx,
+--     so +306910000042 (the "cold" benchmark user) has a handful of messages per 1M rows
+--   * created_at grows with the row number (3 s apart), like an append-only production table
+--   * 90% SENT, 8% FAILED, 2% PENDING
+
+-- Monthly partitions for the seeded range (2025-01 onwards), so rows do not pile up in messages_default
+SELECT create_message_partitions(DATE '2025-01-01', DATE '2026-12-01');
+
+-- Counters are maintained per statement; skip that for the bulk load and reconcile afterwards
+ALTER TABLE messages DISABLE TRIGGER trg_messages_count_insert;
+
+INSERT INTO messages (id, sender, recipient, text, status, failure_reason, created_at, updated_at)
+SELECT gen_random_uuid(),
+       CASE WHEN i % 50 = 0 THEN '+30690000000' || (i / 50 % 10)
+            WHEN i % 50 = 25 AND i <= 1000000 THEN '+306900000099'
+            ELSE '+30691' || lpad((i * 7919 % 1000000)::text, 7, '0') END,
+       CASE WHEN i % 200 = 1 THEN '+306900000001'
+            ELSE '+30692' || lpad((i * 104729 % 2000000)::text, 7, '0') END,
+       'Benchmark message ' || i,
+       CASE WHEN i % 100 < 8 THEN 'FAILED' WHEN i % 100 < 10 THEN 'PENDING' ELSE 'SENT' END,
+       CASE WHEN i % 100 < 8 THEN 'Network timeout' END,
+       TIMESTAMP '2025-01-01 00:00:00' + i * INTERVAL '3 seconds',
+       TIMESTAMP '2025-01-01 00:00:00' + i * INTERVAL '3 seconds' + INTERVAL '2 seconds'
+FROM generate_series(1::BIGINT, 20000000) AS i;
+
+ALTER TABLE messages ENABLE TRIGGER trg_messages_count_insert;
+
+-- Same statement as StatusCounterReconciler
+WITH actual AS (
+    SELECT status, COUNT(*) AS count FROM messages GROUP BY status
+), maintained AS (
+    SELECT status, SUM(count) AS count FROM message_status_counters GROUP BY status
+)
+UPDATE message_status_counters c
+SET count = c.count + (COALESCE(a.count, 0) - m.count)
+FROM maintained m LEFT JOIN actual a ON a.status = m.status
+WHERE c.status = m.status AND c.stripe = 0 AND COALESCE(a.count, 0) <> m.count;
+
+VACUUM ANALYZE messages;
@@ -0,0 +1,130 @@
+package com.intercom.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (-rf json) benchmark by benchmark: the primary score and,
+ * when the run used -prof gc, the bytes allocated per operation (gc.alloc.rate.norm).
+ * A score counts as a regression when it is worse by more than the threshold and the two
+ * confidence intervals do not overlap; any allocation increase above the threshold and above
+ * 16 bytes per operation counts too. Exits with status 1 when something regressed.
+ *
+ * <p>Usage: java -cp benchmarks/target/benchmarks.jar com.intercom.benchmarks.BaselineComparison
+ * baseline.json current.json [threshold percent, default 10]
+ */
+public final class BaselineComparison {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+    private static final double ALLOC_NOISE_BYTES = 16;
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %8s %12s %12s%n",
+                "Benchmark", "Baseline", "Current", "Change", "Alloc B/op", "was");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode now = entry.getValue();
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f%n", entry.getKey(), "-", score(now));
+                continue;
+            }
+
+            double change = (score(now) - score(before)) / score(before);
+            // Throughput is better when higher, every other mode when lower
+            boolean higherIsBetter = "thrpt".equals(now.path("mode").asText());
+            double worse = higherIsBetter ? -change : change;
+            boolean overlapping = Math.abs(score(now) - score(before)) <= error(now) + error(before);
+            boolean scoreRegressed = worse > threshold && !overlapping;
+
+            double allocNow = allocated(now);
+            double allocBefore = allocated(before);
+            boolean allocRegressed = allocNow >= 0 && allocBefore >= 0
+                    && allocNow - allocBefore > ALLOC_NOISE_BYTES
+                    && allocNow > allocBefore * (1 + threshold);
+
+            System.out.printf("%-90s %14.3f %14.3f %+7.1f%% %12s %12s%s%n",
+                    entry.getKey(), score(before), score(now), change * 100,
+                    formatBytes(allocNow), formatBytes(allocBefore),
+                    scoreRegressed || allocRegressed ? "  REGRESSED" : "");
+            if (scoreRegressed || allocRegressed) {
+                regressions++;
+            }
+        }
+        for (String missing : baseline.keySet()) {
+            if (!current.containsKey(missing)) {
+                System.out.printf("%-90s not in current results%n", missing);
+            }
+        }
+
+        System.out.printf("%n%d regression(s) beyond %.0f%%%n", regressions, threshold * 100);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * Results keyed by benchmark, mode and parameters
+     */
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace("com.intercom.benchmarks.", ""));
+            key.append(" [").append(result.path("mode").asText()).append(']');
+            Map<String, String> params = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> param = fields.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            params.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+
+    private static double error(JsonNode result) {
+        double error = result.path("primaryMetric").path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    /**
+     * Bytes allocated per operation, or -1 when the run had no gc profiler.
+     * Older JMH versions prefix secondary metric names with a middle dot.
+     */
+    private static double allocated(JsonNode result) {
+        Iterator<Map.Entry<String, JsonNode>> metrics = result.path("secondaryMetrics").fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String, JsonNode> metric = metrics.next();
+            if (metric.getKey().replace("·", "").equals(ALLOC_NORM)) {
+                return metric.getValue().path("score").asDouble();
+            }
+        }
+        return -1;
+    }
+
+    private static String formatBytes(double bytes) {
+        return bytes < 0 ? "-" : String.format("%.1f", bytes);
+    }
+}
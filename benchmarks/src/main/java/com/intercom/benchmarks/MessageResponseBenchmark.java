@@ -0,0 +1,57 @@
+package com.intercom.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.sms.api.dto.MessageResponse;
+import com.intercom.sms.domain.model.Message;
+import com.intercom.sms.domain.model.MessageStatus;
+import com.intercom.sms.domain.model.UuidV7Generator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response path of GET /v1/messages/{id} and the listing endpoints: MessageResponse.from
+ * and the JSON encoding of its result.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageResponseBenchmark {
+
+    @Param({"32", "160", "1600"})
+    int textLength;
+
+    private ObjectMapper objectMapper;
+    private Message message;
+    private MessageResponse response;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        message = new Message("+1234567890", "+1987654321", "x".repeat(textLength));
+        message.setId(UuidV7Generator.next());
+        message.setStatus(MessageStatus.SENT);
+        message.setCreatedAt(LocalDateTime.now());
+        message.setUpdatedAt(LocalDateTime.now());
+        response = MessageResponse.from(message);
+    }
+
+    @Benchmark
+    public MessageResponse mapToResponse() {
+        return MessageResponse.from(message);
+    }
+
+    @Benchmark
+    public byte[] encodeResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] mapAndEncode() throws Exception {
+        return objectMapper.writeValueAsBytes(MessageResponse.from(message));
+    }
+}
@@ -0,0 +1,69 @@
+package com.intercom.benchmarks;
+
+import com.intercom.sms.api.dto.SendMessageRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean Validation of SendMessageRequest, run once per request on POST /v1/messages and once per
+ * item by MessageService.sendMessageBatch. Invalid requests also pay for building and interpolating
+ * the violation messages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SendMessageRequestValidationBenchmark {
+
+    /**
+     * VALID passes every constraint, INVALID_NUMBERS fails both phone number patterns,
+     * TOO_LONG fails the text size limit
+     */
+    @Param({"VALID", "INVALID_NUMBERS", "TOO_LONG"})
+    String request;
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private SendMessageRequest sendMessageRequest;
+
+    @Setup
+    public void setup() {
+        // Quarkus interpolates without Expression Language as well
+        validatorFactory = Validation.byDefaultProvider()
+                .configure()
+                .messageInterpolator(new ParameterMessageInterpolator())
+                .buildValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        switch (request) {
+            case "INVALID_NUMBERS":
+                sendMessageRequest = new SendMessageRequest("0123", "phone", "Hello");
+                break;
+            case "TOO_LONG":
+                sendMessageRequest = new SendMessageRequest("+1234567890", "+1987654321", "x".repeat(1601));
+                break;
+            default:
+                sendMessageRequest = new SendMessageRequest("+1234567890", "+1987654321", "Your code is 123456");
+                break;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<SendMessageRequest>> validate() {
+        return validator.validate(sendMessageRequest);
+    }
+}
@@ -0,0 +1,85 @@
+package com.intercom.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.processor.dto.SmsRequestMessage;
+import com.intercom.sms.domain.model.Message;
+import com.intercom.sms.messaging.SmsRequestCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON and binary wire formats for sms.requests payloads:
+ * producer-side encoding (MessageProducer.sendSmsRequest), consumer-side decoding,
+ * format detection as done by SmsRequestConsumer, and the full round trip.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SmsRequestCodecBenchmark {
+
+    @Param({"32", "160", "1600"})
+    int textLength;
+
+    private ObjectMapper objectMapper;
+    private Message message;
+    private byte[] jsonPayload;
+    private byte[] binaryPayload;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper();
+        message = new Message("+1234567890", "+1987654321", "x".repeat(textLength));
+        message.setId(UUID.randomUUID());
+        message.setCreatedAt(LocalDateTime.now());
+        jsonPayload = SmsRequestCodec.encodeJson(objectMapper, message);
+        binaryPayload = SmsRequestCodec.encodeBinary(message);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return SmsRequestCodec.encodeJson(objectMapper, message);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return SmsRequestCodec.encodeBinary(message);
+    }
+
+    @Benchmark
+    public SmsRequestMessage decodeJson() throws Exception {
+        return objectMapper.readValue(jsonPayload, SmsRequestMessage.class);
+    }
+
+    @Benchmark
+    public SmsRequestMessage decodeBinary() {
+        return com.intercom.processor.consumer.SmsRequestCodec.decodeBinary(binaryPayload);
+    }
+
+    @Benchmark
+    public SmsRequestMessage consumeJson() throws Exception {
+        return com.intercom.processor.consumer.SmsRequestCodec.decode(objectMapper, jsonPayload);
+    }
+
+    @Benchmark
+    public SmsRequestMessage consumeBinary() throws Exception {
+        return com.intercom.processor.consumer.SmsRequestCodec.decode(objectMapper, binaryPayload);
+    }
+
+    @Benchmark
+    public SmsRequestMessage roundTripJson() throws Exception {
+        byte[] payload = SmsRequestCodec.encodeJson(objectMapper, message);
+        return objectMapper.readValue(payload, SmsRequestMessage.class);
+    }
+
+    @Benchmark
+    public SmsRequestMessage roundTripBinary() {
+        byte[] payload = SmsRequestCodec.encodeBinary(message);
+        return com.intercom.processor.consumer.SmsRequestCodec.decodeBinary(payload);
+    }
+}
@@ -0,0 +1,102 @@
+package com.intercom.benchmarks;
+
+import com.intercom.sms.domain.repository.UserMessageQueries;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Page-0 latency of the user message listing against a real PostgreSQL seeded with
+ * benchmarks/sql/seed_user_messages.sql: the single OR predicate the repository used to issue
+ * versus the UNION ALL of two index-ordered scans it issues now. Sample mode reports p50/p99/p99.9.
+ *
+ * <p>Connection: -Dbench.jdbc.url (default jdbc:postgresql://localhost:5432/smsdb),
+ * -Dbench.jdbc.user and -Dbench.jdbc.password (default sms/sms); forks inherit them from the launching JVM.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class UserMessageQueryBenchmark {
+
+    /**
+     * SQL equivalent of the previous Panache query: "sender = ?1 or recipient = ?1" ordered by createdAt, id
+     */
+    static final String OR_PAGE = "SELECT * FROM messages WHERE sender = :user OR recipient = :user"
+            + " ORDER BY created_at DESC, id DESC LIMIT :limit OFFSET :offset";
+
+    private static final Pattern NAMED_PARAMETER = Pattern.compile(":(\\w+)");
+
+    @Param({"OR", "UNION_ALL"})
+    String query;
+
+    /**
+     * Hot A2P number that sends and receives, dormant bulk sender whose messages are all old,
+     * and an ordinary subscriber (see the seed script)
+     */
+    @Param({"+306900000001", "+306900000099", "+306910000042"})
+    String user;
+
+    @Param({"20"})
+    int pageSize;
+
+    private Connection connection;
+    private PreparedStatement statement;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/smsdb"),
+                System.getProperty("bench.jdbc.user", "sms"),
+                System.getProperty("bench.jdbc.password", "sms"));
+
+        String sql = "OR".equals(query) ? OR_PAGE : UserMessageQueries.page(false, false);
+        Map<String, Object> values = Map.of(
+                "user", user, "limit", pageSize, "branchLimit", pageSize, "offset", 0);
+
+        // Rewrite :name parameters to JDBC placeholders, binding in order of appearance
+        List<Object> bindings = new ArrayList<>();
+        Matcher matcher = NAMED_PARAMETER.matcher(sql);
+        StringBuilder jdbcSql = new StringBuilder();
+        while (matcher.find()) {
+            bindings.add(values.get(matcher.group(1)));
+            matcher.appendReplacement(jdbcSql, "?");
+        }
+        matcher.appendTail(jdbcSql);
+
+        statement = connection.prepareStatement(jdbcSql.toString());
+        for (int i = 0; i < bindings.size(); i++) {
+            statement.setObject(i + 1, bindings.get(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        statement.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public int page0() throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                resultSet.getObject(1);
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,134 @@
+package com.intercom.benchmarks;
+
+import com.intercom.sms.domain.model.UuidV7Generator;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput into a table keyed by random UUIDv4 versus time-ordered UUIDv7 ids, against a
+ * real PostgreSQL migrated by sms-service (the prefill uses uuid_generate_v7() from V7).
+ * The table is prefilled with prefillRows rows of the same id kind so the primary key index is larger
+ * than a cold cache; each operation then commits one JDBC batch of batchSize rows from several threads.
+ * WAL written per inserted row is printed at the end of each trial.
+ *
+ * <p>Connection: -Dbench.jdbc.url (default jdbc:postgresql://localhost:5432/smsdb),
+ * -Dbench.jdbc.user and -Dbench.jdbc.password (default sms/sms); forks inherit them from the launching JVM.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(4)
+public class UuidInsertBenchmark {
+
+    static final String TABLE = "bench_uuid_inserts";
+
+    @State(Scope.Benchmark)
+    public static class Table {
+
+        @Param({"V4", "V7"})
+        String ids;
+
+        @Param({"5000000"})
+        int prefillRows;
+
+        @Param({"100"})
+        int batchSize;
+
+        private String walStart;
+        private long rowsBefore;
+
+        @Setup(Level.Trial)
+        public void create() throws SQLException {
+            try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + TABLE);
+                statement.execute("CREATE TABLE " + TABLE + " ("
+                        + "id UUID PRIMARY KEY, sender VARCHAR(20) NOT NULL, recipient VARCHAR(20) NOT NULL, "
+                        + "text VARCHAR(1600) NOT NULL, status VARCHAR(10) NOT NULL, "
+                        + "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+                statement.execute("INSERT INTO " + TABLE + " (id, sender, recipient, text, status) "
+                        + "SELECT " + ("V7".equals(ids) ? "uuid_generate_v7()" : "gen_random_uuid()")
+                        + ", '+306900000001', '+306920000001', 'Benchmark message ' || i, 'SENT' "
+                        + "FROM generate_series(1, " + prefillRows + ") AS i");
+                statement.execute("VACUUM ANALYZE " + TABLE);
+                statement.execute("CHECKPOINT");
+                walStart = singleValue(statement, "SELECT pg_current_wal_lsn()::TEXT");
+                rowsBefore = prefillRows;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void report() throws SQLException {
+            try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+                long rows = Long.parseLong(singleValue(statement, "SELECT COUNT(*) FROM " + TABLE)) - rowsBefore;
+                long walBytes = Long.parseLong(singleValue(statement,
+                        "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), '" + walStart + "')::BIGINT"));
+                String indexSize = singleValue(statement,
+                        "SELECT pg_size_pretty(pg_relation_size('" + TABLE + "_pkey'))");
+                System.out.printf("%n%s: %d rows inserted, %.0f WAL bytes per row, primary key index %s%n",
+                        ids, rows, rows > 0 ? (double) walBytes / rows : 0.0, indexSize);
+                statement.execute("DROP TABLE " + TABLE);
+            }
+        }
+
+        UUID nextId() {
+            return "V7".equals(ids) ? UuidV7Generator.next() : UUID.randomUUID();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+
+        private Connection connection;
+        private PreparedStatement insert;
+
+        @Setup(Level.Trial)
+        public void open() throws SQLException {
+            connection = connect();
+            insert = connection.prepareStatement("INSERT INTO " + TABLE
+                    + " (id, sender, recipient, text, status) VALUES (?, ?, ?, ?, 'PENDING')");
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            insert.close();
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public int insertBatch(Table table, Session session) throws SQLException {
+        PreparedStatement insert = session.insert;
+        for (int i = 0; i < table.batchSize; i++) {
+            insert.setObject(1, table.nextId());
+            insert.setString(2, "+306900000001");
+            insert.setString(3, "+306920000002");
+            insert.setString(4, "Benchmark insert");
+            insert.addBatch();
+        }
+        return insert.executeBatch().length;
+    }
+
+    static Connection connect() throws SQLException {
+        return DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/smsdb"),
+                System.getProperty("bench.jdbc.user", "sms"),
+                System.getProperty("bench.jdbc.password", "sms"));
+    }
+
+    private static String singleValue(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
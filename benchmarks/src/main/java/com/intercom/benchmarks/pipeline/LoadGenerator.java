@@ -0,0 +1,162 @@
+package com.intercom.benchmarks.pipeline;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop driver for POST /v1/messages: requests are scheduled at a fixed rate whether or not earlier
+ * ones have completed, and latency is measured from each request's scheduled time. When the service
+ * falls behind, queueing delay therefore shows up in the histogram instead of silently lowering the
+ * offered rate (coordinated omission).
+ * Only requests scheduled after the warmup are recorded.
+ */
+final class LoadGenerator {
+
+    private static final String ID_FIELD = "\"id\":\"";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+    private final URI sendUri;
+    private final int rate;
+    private final int textLength;
+    private final int senders;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    /**
+     * Accept latency in microseconds, from scheduled send to the 202 response
+     */
+    private final Histogram acceptLatency = new ConcurrentHistogram(3);
+    private final Queue<UUID> acceptedIds = new ConcurrentLinkedQueue<>();
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<Integer, LongAdder> rejected = new ConcurrentHashMap<>();
+    private final AtomicLong lastCompletionNanos = new AtomicLong();
+
+    LoadGenerator(HttpClient client, URI sendUri, int rate, int textLength, int senders, int maxInFlight) {
+        this.client = client;
+        this.sendUri = sendUri;
+        this.rate = rate;
+        this.textLength = textLength;
+        this.senders = senders;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Send for warmup plus duration, then wait for outstanding responses.
+     *
+     * @return nanoTime at which measurement started
+     */
+    long run(Duration warmup, Duration duration) throws InterruptedException {
+        long intervalNanos = 1_000_000_000L / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // Blocking here delays later sends, which their latency (measured from intended) accounts for
+            inFlight.acquire();
+            send(intended, intended >= measureFrom);
+        }
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        return measureFrom;
+    }
+
+    private void send(long intended, boolean measured) {
+        String sender = "+3069" + String.format("%08d", ThreadLocalRandom.current().nextInt(senders));
+        String recipient = "+3069" + String.format("%08d", 10_000_000 + ThreadLocalRandom.current().nextInt(80_000_000));
+        String body = "{\"sender\":\"" + sender + "\",\"recipient\":\"" + recipient + "\",\"text\":\""
+                + "x".repeat(textLength) + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(sendUri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        if (measured) {
+            scheduled.increment();
+        }
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, failure) -> {
+            try {
+                long now = System.nanoTime();
+                lastCompletionNanos.accumulateAndGet(now, Math::max);
+                if (!measured) {
+                    return;
+                }
+                if (failure != null) {
+                    errors.increment();
+                } else if (response.statusCode() == 202) {
+                    acceptLatency.recordValue((now - intended) / 1000);
+                    accepted.increment();
+                    acceptedIds.add(messageId(response.body()));
+                } else {
+                    rejected.computeIfAbsent(response.statusCode(), status -> new LongAdder()).increment();
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Message id from a MessageResponse body, without a full JSON parse on the driver's threads
+     */
+    private static UUID messageId(String body) {
+        int start = body.indexOf(ID_FIELD) + ID_FIELD.length();
+        return UUID.fromString(body.substring(start, start + 36));
+    }
+
+    Histogram acceptLatency() {
+        return acceptLatency;
+    }
+
+    Queue<UUID> acceptedIds() {
+        return acceptedIds;
+    }
+
+    long scheduled() {
+        return scheduled.sum();
+    }
+
+    long accepted() {
+        return accepted.sum();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    Map<Integer, LongAdder> rejected() {
+        return rejected;
+    }
+
+    long lastCompletionNanos() {
+        return lastCompletionNanos.get();
+    }
+}
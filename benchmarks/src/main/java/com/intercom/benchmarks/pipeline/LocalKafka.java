@@ -0,0 +1,89 @@
+package com.intercom.benchmarks.pipeline;
+
+import org.apache.kafka.common.Uuid;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Single-node KRaft broker in a child JVM, with its log directory under the run directory.
+ * It stands in for the Kafka cluster between the two services: they run in separate JVMs, so an
+ * in-memory channel cannot connect them, and the broker also carries the delivery-report and
+ * cache-invalidation channels without any change to the services' configuration.
+ */
+final class LocalKafka implements AutoCloseable {
+
+    private final ServiceProcess broker;
+    private final int port;
+
+    private LocalKafka(ServiceProcess broker, int port) {
+        this.broker = broker;
+        this.port = port;
+    }
+
+    static LocalKafka start(Path runDirectory, int partitions) throws IOException, InterruptedException {
+        int port = PipelineHarness.freePort();
+        int controllerPort = PipelineHarness.freePort();
+
+        Properties config = new Properties();
+        config.setProperty("process.roles", "broker,controller");
+        config.setProperty("node.id", "1");
+        config.setProperty("controller.quorum.voters", "1@localhost:" + controllerPort);
+        config.setProperty("listeners", "PLAINTEXT://localhost:" + port + ",CONTROLLER://localhost:" + controllerPort);
+        config.setProperty("advertised.listeners", "PLAINTEXT://localhost:" + port);
+        config.setProperty("controller.listener.names", "CONTROLLER");
+        config.setProperty("listener.security.protocol.map", "PLAINTEXT:PLAINTEXT,CONTROLLER:PLAINTEXT");
+        config.setProperty("inter.broker.listener.name", "PLAINTEXT");
+        config.setProperty("log.dirs", runDirectory.resolve("kafka-data").toString());
+        config.setProperty("num.partitions", Integer.toString(partitions));
+        config.setProperty("offsets.topic.replication.factor", "1");
+        config.setProperty("transaction.state.log.replication.factor", "1");
+        config.setProperty("transaction.state.log.min.isr", "1");
+        config.setProperty("group.initial.rebalance.delay.ms", "0");
+        Path configFile = runDirectory.resolve("kafka.properties");
+        try (Writer writer = Files.newBufferedWriter(configFile)) {
+            config.store(writer, "Pipeline harness broker");
+        }
+
+        List<String> jvmArgs = List.of("-Xmx512m");
+        try (ServiceProcess format = ServiceProcess.startMain("kafka-format", jvmArgs, "kafka.tools.StorageTool",
+                List.of("format", "-t", Uuid.randomUuid().toString(), "-c", configFile.toString()), runDirectory)) {
+            format.awaitExit(Duration.ofSeconds(60));
+        }
+        ServiceProcess broker = ServiceProcess.startMain("kafka", jvmArgs, "kafka.Kafka",
+                List.of(configFile.toString()), runDirectory);
+        LocalKafka kafka = new LocalKafka(broker, port);
+        kafka.awaitListening(Duration.ofSeconds(60));
+        return kafka;
+    }
+
+    String bootstrapServers() {
+        return "localhost:" + port;
+    }
+
+    private void awaitListening(Duration timeout) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            broker.checkAlive();
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 500);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(250);
+            }
+        }
+        throw new IllegalStateException("Kafka did not listen within " + timeout + "\n" + broker.logTail());
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        broker.close();
+    }
+}
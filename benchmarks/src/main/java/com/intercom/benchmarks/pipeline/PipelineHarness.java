@@ -0,0 +1,324 @@
+package com.intercom.benchmarks.pipeline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.HdrHistogram.Histogram;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+
+/**
+ * End-to-end capacity run of the whole pipeline on one machine, without containers: an embedded
+ * PostgreSQL (in this JVM), a single-node Kafka broker (see {@link LocalKafka}), sms-service and
+ * processor-service from their packaged jars, with delivery reports sent back over the REST callback.
+ * A send endpoint is driven at a fixed rate (see {@link LoadGenerator}), then the run waits for every
+ * message to reach a final status and writes a JSON report with HDR histograms of
+ * <ul>
+ *   <li>accept latency: from the scheduled send to the 202 response</li>
+ *   <li>accept-to-final latency: from the message's created_at to the updated_at of its SENT/FAILED
+ *   status update, both taken on this machine's clock</li>
+ * </ul>
+ *
+ * <p>Configuration (system properties, paths relative to the repository root):
+ * <ul>
+ *   <li>harness.endpoint (/v1/messages, or /v1/messages/reactive to compare the non-blocking path)</li>
+ *   <li>harness.rate (requests per second, default 200), harness.warmup-seconds (10),
+ *   harness.duration-seconds (60), harness.drain-timeout-seconds (120)</li>
+ *   <li>harness.max-in-flight (1000), harness.text-length (160), harness.senders (1000),
+ *   harness.kafka.partitions (8)</li>
+ *   <li>harness.sms.jar, harness.processor.jar (target/quarkus-app/quarkus-run.jar of each service)</li>
+ *   <li>harness.sms.jvm-args, harness.processor.jvm-args: extra JVM arguments separated by spaces,
+ *   e.g. "-Xmx1g -Dprocessor.simulation.min-delay-ms=0"</li>
+ *   <li>harness.run-dir (benchmarks/target/pipeline-&lt;timestamp&gt;, holds the logs of every process),
+ *   harness.report (report.json in the run directory), harness.label (free text stored in the report,
+ *   e.g. the commit)</li>
+ * </ul>
+ */
+public final class PipelineHarness {
+
+    private static final DateTimeFormatter RUN_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+    private static final int ID_CHUNK = 10_000;
+
+    private final String endpoint = System.getProperty("harness.endpoint", "/v1/messages");
+    private final int rate = Integer.getInteger("harness.rate", 200);
+    private final int warmupSeconds = Integer.getInteger("harness.warmup-seconds", 10);
+    private final int durationSeconds = Integer.getInteger("harness.duration-seconds", 60);
+    private final int drainTimeoutSeconds = Integer.getInteger("harness.drain-timeout-seconds", 120);
+    private final int maxInFlight = Integer.getInteger("harness.max-in-flight", 1000);
+    private final int textLength = Integer.getInteger("harness.text-length", 160);
+    private final int senders = Integer.getInteger("harness.senders", 1000);
+    private final int kafkaPartitions = Integer.getInteger("harness.kafka.partitions", 8);
+    private final Path smsJar = Path.of(System.getProperty("harness.sms.jar",
+            "service-sms/target/quarkus-app/quarkus-run.jar")).toAbsolutePath();
+    private final Path processorJar = Path.of(System.getProperty("harness.processor.jar",
+            "service-processor/target/quarkus-app/quarkus-run.jar")).toAbsolutePath();
+    private final List<String> smsJvmArgs = jvmArgs("harness.sms.jvm-args");
+    private final List<String> processorJvmArgs = jvmArgs("harness.processor.jvm-args");
+    private final Path runDirectory = Path.of(System.getProperty("harness.run-dir",
+            "benchmarks/target/pipeline-" + RUN_TIMESTAMP.format(LocalDateTime.now()))).toAbsolutePath();
+    private final Path reportFile = Path.of(System.getProperty("harness.report",
+            runDirectory.resolve("report.json").toString())).toAbsolutePath();
+    private final String label = System.getProperty("harness.label", "");
+
+    /**
+     * Everything started so far, closed in reverse order at the end or on Ctrl-C
+     */
+    private final Deque<AutoCloseable> started = new ArrayDeque<>();
+
+    private PipelineHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        PipelineHarness harness = new PipelineHarness();
+        Runtime.getRuntime().addShutdownHook(new Thread(harness::stopAll, "pipeline-harness-shutdown"));
+        try {
+            harness.run();
+        } finally {
+            harness.stopAll();
+        }
+    }
+
+    private void run() throws Exception {
+        Files.createDirectories(runDirectory);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newFixedThreadPool(4, runnable -> {
+                    Thread thread = new Thread(runnable, "pipeline-http");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+        log("Run directory " + runDirectory);
+
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder()
+                .setServerConfig("max_connections", "200")
+                .setDataDirectory(runDirectory.resolve("postgres-data"))
+                .start();
+        started.push(postgres);
+        log("PostgreSQL on port " + postgres.getPort());
+
+        LocalKafka kafka = LocalKafka.start(runDirectory, kafkaPartitions);
+        started.push(kafka);
+        log("Kafka on " + kafka.bootstrapServers());
+
+        int smsPort = freePort();
+        Map<String, String> smsConfig = new LinkedHashMap<>();
+        smsConfig.put("quarkus.http.port", Integer.toString(smsPort));
+        smsConfig.put("quarkus.datasource.jdbc.url",
+                "jdbc:postgresql://localhost:" + postgres.getPort() + "/postgres?reWriteBatchedInserts=true");
+        smsConfig.put("quarkus.datasource.reactive.url", "postgresql://localhost:" + postgres.getPort() + "/postgres");
+        smsConfig.put("quarkus.datasource.username", "postgres");
+        smsConfig.put("quarkus.datasource.password", "postgres");
+        smsConfig.put("kafka.bootstrap.servers", kafka.bootstrapServers());
+        smsConfig.put("quarkus.log.category.\"com.intercom.sms\".level", "INFO");
+        ServiceProcess sms = ServiceProcess.startQuarkus("sms-service", smsJar, smsConfig, smsJvmArgs, runDirectory);
+        started.push(sms);
+        sms.awaitHttpReady(client, URI.create("http://localhost:" + smsPort + "/q/health/ready"), STARTUP_TIMEOUT);
+        log("sms-service on port " + smsPort);
+
+        int processorPort = freePort();
+        Map<String, String> processorConfig = new LinkedHashMap<>();
+        processorConfig.put("quarkus.http.port", Integer.toString(processorPort));
+        processorConfig.put("kafka.bootstrap.servers", kafka.bootstrapServers());
+        processorConfig.put("processor.callback.transport", "rest");
+        processorConfig.put("callback.url", "http://localhost:" + smsPort + "/v1/internal/delivery-report");
+        processorConfig.put("quarkus.rest-client.\"com.intercom.processor.client.SmsServiceClient\".url",
+                "http://localhost:" + smsPort);
+        processorConfig.put("quarkus.log.category.\"com.intercom.processor\".level", "INFO");
+        ServiceProcess processor = ServiceProcess.startQuarkus("processor-service", processorJar, processorConfig,
+                processorJvmArgs, runDirectory);
+        started.push(processor);
+        processor.awaitHttpReady(client, URI.create("http://localhost:" + processorPort + "/q/health/ready"),
+                STARTUP_TIMEOUT);
+        log("processor-service on port " + processorPort);
+
+        log(String.format("Sending %d requests/s to %s: %ds warmup, %ds measured", rate, endpoint, warmupSeconds,
+                durationSeconds));
+        LoadGenerator load = new LoadGenerator(client, URI.create("http://localhost:" + smsPort + endpoint),
+                rate, textLength, senders, maxInFlight);
+        long measureFrom = load.run(Duration.ofSeconds(warmupSeconds), Duration.ofSeconds(durationSeconds));
+        double sendSeconds = (load.lastCompletionNanos() - measureFrom) / 1e9;
+        sms.checkAlive();
+        processor.checkAlive();
+
+        DataSource dataSource = postgres.getPostgresDatabase();
+        long pending = drain(dataSource, Duration.ofSeconds(drainTimeoutSeconds));
+        Histogram finalLatency = new Histogram(3);
+        Map<String, Long> finalStatuses = new TreeMap<>();
+        recordFinalLatency(dataSource, new ArrayList<>(load.acceptedIds()), finalLatency, finalStatuses);
+
+        ObjectNode report = report(load, sendSeconds, finalLatency, finalStatuses, pending);
+        Files.createDirectories(reportFile.getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile.toFile(), report);
+        log(String.format("Accepted %d of %d (%.1f/s); accept p50 %.1f ms, p99 %.1f ms; "
+                        + "accept-to-final p50 %.1f ms, p99 %.1f ms; %d still pending",
+                load.accepted(), load.scheduled(), load.accepted() / sendSeconds,
+                millis(load.acceptLatency(), 50), millis(load.acceptLatency(), 99),
+                millis(finalLatency, 50), millis(finalLatency, 99), pending));
+        log("Report written to " + reportFile);
+    }
+
+    /**
+     * Wait until no message is PENDING; the database only holds this run's messages
+     *
+     * @return messages still pending at the timeout
+     */
+    private long drain(DataSource dataSource, Duration timeout) throws SQLException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long pending;
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            while (true) {
+                try (ResultSet resultSet = statement.executeQuery(
+                        "SELECT COUNT(*) FROM messages WHERE status = 'PENDING'")) {
+                    resultSet.next();
+                    pending = resultSet.getLong(1);
+                }
+                if (pending == 0 || System.nanoTime() > deadline) {
+                    return pending;
+                }
+                log(pending + " messages pending");
+                Thread.sleep(1000);
+            }
+        }
+    }
+
+    private void recordFinalLatency(DataSource dataSource, List<UUID> ids, Histogram histogram,
+                                    Map<String, Long> statuses) throws SQLException {
+        String sql = "SELECT status, EXTRACT(EPOCH FROM (updated_at - created_at)) * 1000000 FROM messages "
+                + "WHERE id = ANY(?) AND status <> 'PENDING'";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int from = 0; from < ids.size(); from += ID_CHUNK) {
+                Array chunk = connection.createArrayOf("uuid",
+                        ids.subList(from, Math.min(ids.size(), from + ID_CHUNK)).toArray());
+                statement.setArray(1, chunk);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        statuses.merge(resultSet.getString(1), 1L, Long::sum);
+                        histogram.recordValue(Math.max(0, resultSet.getLong(2)));
+                    }
+                }
+                chunk.free();
+            }
+        }
+    }
+
+    private ObjectNode report(LoadGenerator load, double sendSeconds, Histogram finalLatency,
+                              Map<String, Long> finalStatuses, long pending) {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode report = mapper.createObjectNode();
+        report.put("timestamp", Instant.now().toString());
+        report.put("label", label);
+
+        ObjectNode config = report.putObject("config");
+        config.put("endpoint", endpoint);
+        config.put("rate", rate);
+        config.put("warmupSeconds", warmupSeconds);
+        config.put("durationSeconds", durationSeconds);
+        config.put("maxInFlight", maxInFlight);
+        config.put("textLength", textLength);
+        config.put("senders", senders);
+        config.put("kafkaPartitions", kafkaPartitions);
+        config.put("smsJvmArgs", String.join(" ", smsJvmArgs));
+        config.put("processorJvmArgs", String.join(" ", processorJvmArgs));
+
+        ObjectNode environment = report.putObject("environment");
+        environment.put("processors", Runtime.getRuntime().availableProcessors());
+        environment.put("java", System.getProperty("java.version"));
+        environment.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+
+        ObjectNode requests = report.putObject("requests");
+        requests.put("scheduled", load.scheduled());
+        requests.put("accepted", load.accepted());
+        ObjectNode rejected = requests.putObject("rejected");
+        new TreeMap<>(load.rejected()).forEach((status, count) -> rejected.put(status.toString(), count.sum()));
+        requests.put("errors", load.errors());
+        requests.put("acceptedPerSecond", load.accepted() / sendSeconds);
+
+        latency(report.putObject("acceptLatencyMs"), load.acceptLatency());
+        ObjectNode finalNode = report.putObject("acceptToFinalLatencyMs");
+        latency(finalNode, finalLatency);
+        ObjectNode statuses = finalNode.putObject("statuses");
+        finalStatuses.forEach(statuses::put);
+        finalNode.put("pendingAfterDrain", pending);
+        return report;
+    }
+
+    /**
+     * Summary percentiles in milliseconds plus the full histogram (microseconds, compressed and
+     * base64-encoded as by HdrHistogram's log format) for later comparison or plotting
+     */
+    private static void latency(ObjectNode node, Histogram histogram) {
+        node.put("count", histogram.getTotalCount());
+        node.put("mean", histogram.getMean() / 1000);
+        for (double percentile : new double[]{50, 90, 99, 99.9, 99.99}) {
+            node.put("p" + (percentile == (long) percentile ? Long.toString((long) percentile)
+                    : Double.toString(percentile)), millis(histogram, percentile));
+        }
+        node.put("max", histogram.getMaxValue() / 1000.0);
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer, Deflater.BEST_COMPRESSION);
+        node.put("histogram", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private synchronized void stopAll() {
+        while (!started.isEmpty()) {
+            AutoCloseable closeable = started.pop();
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log("Failed to stop " + closeable + ": " + e);
+            }
+        }
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static List<String> jvmArgs(String property) {
+        String value = System.getProperty(property, "").trim();
+        return value.isEmpty() ? List.of() : List.of(value.split("\\s+"));
+    }
+
+    private static void log(String message) {
+        System.out.println("[pipeline] " + message);
+    }
+}
@@ -0,0 +1,142 @@
+package com.intercom.benchmarks.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Child JVM started by the harness (a service or the broker), with its output going to a log file
+ * in the run directory. Closing it asks the process to stop and kills it if it has not within 20 seconds.
+ */
+final class ServiceProcess implements AutoCloseable {
+
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(20);
+
+    private final String name;
+    private final Process process;
+    private final Path log;
+
+    private ServiceProcess(String name, Process process, Path log) {
+        this.name = name;
+        this.process = process;
+        this.log = log;
+    }
+
+    /**
+     * Start a Quarkus fast-jar (target/quarkus-app/quarkus-run.jar) with the given configuration overrides;
+     * extra JVM arguments come last so they can override those
+     */
+    static ServiceProcess startQuarkus(String name, Path jar, Map<String, String> config, List<String> jvmArgs,
+                                       Path runDirectory) throws IOException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException(name + " jar not found at " + jar + "; build it with mvn package");
+        }
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable());
+        config.forEach((key, value) -> command.add("-D" + key + "=" + value));
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar.toString());
+        return start(name, command, runDirectory);
+    }
+
+    /**
+     * Run a main class from the harness' own classpath
+     */
+    static ServiceProcess startMain(String name, List<String> jvmArgs, String mainClass, List<String> args,
+                                    Path runDirectory) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        // Absolute, since the child runs in the run directory
+        command.add(Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+                .map(entry -> Path.of(entry).toAbsolutePath().toString())
+                .collect(Collectors.joining(File.pathSeparator)));
+        command.add(mainClass);
+        command.addAll(args);
+        return start(name, command, runDirectory);
+    }
+
+    private static ServiceProcess start(String name, List<String> command, Path runDirectory) throws IOException {
+        Path log = runDirectory.resolve(name + ".log");
+        Process process = new ProcessBuilder(command)
+                .directory(runDirectory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        return new ServiceProcess(name, process, log);
+    }
+
+    /**
+     * Wait for the process to exit on its own, failing if it does not within the timeout or exits non-zero
+     */
+    void awaitExit(Duration timeout) throws IOException, InterruptedException {
+        if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException(name + " did not finish within " + timeout + "\n" + logTail());
+        }
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException(name + " exited with " + process.exitValue() + "\n" + logTail());
+        }
+    }
+
+    /**
+     * Poll an HTTP endpoint of the process until it answers 200
+     */
+    void awaitHttpReady(HttpClient client, URI uri, Duration timeout) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(2)).GET().build();
+        while (System.nanoTime() < deadline) {
+            checkAlive();
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(250);
+        }
+        throw new IllegalStateException(name + " was not ready within " + timeout + "\n" + logTail());
+    }
+
+    void checkAlive() throws IOException {
+        if (!process.isAlive()) {
+            throw new IllegalStateException(name + " exited with " + process.exitValue() + "\n" + logTail());
+        }
+    }
+
+    String logTail() throws IOException {
+        // Decoding via String replaces malformed bytes instead of failing on them
+        List<String> lines = new String(Files.readAllBytes(log), StandardCharsets.UTF_8).lines().toList();
+        return String.join("\n", lines.subList(Math.max(0, lines.size() - 30), lines.size()));
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (!process.isAlive()) {
+            return;
+        }
+        process.destroy();
+        if (!process.waitFor(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private static String javaExecutable() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+}
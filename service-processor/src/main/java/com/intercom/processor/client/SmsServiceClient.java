@@ -1,9 +1,12 @@
 package com.intercom.processor.client;
 
+import com.intercom.processor.dto.DeliveryReportBatchRequest;
+import com.intercom.processor.dto.DeliveryReportBatchResponse;
 import com.intercom.processor.dto.DeliveryReportRequest;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 
@@ -21,4 +24,14 @@ public interface SmsServiceClient {
     @POST
     @Path("/delivery-report")
     void sendDeliveryReport(DeliveryReportRequest deliveryReport);
+
+    /**
+     * Send a batch of delivery reports to SMS service
+     *
+     * @return the number applied and the IDs of messages that could not be updated
+     */
+    @POST
+    @Path("/delivery-reports")
+    @Produces(MediaType.APPLICATION_JSON)
+    DeliveryReportBatchResponse sendDeliveryReports(DeliveryReportBatchRequest batch);
 }
@@ -0,0 +1,80 @@
+package com.intercom.processor.consumer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.reactive.messaging.kafka.KafkaClientService;
+import io.smallrye.reactive.messaging.kafka.KafkaConsumer;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pauses and resumes the sms-requests Kafka consumer so that polling stops while
+ * the processor is at its in-flight limit and restarts once work has drained.
+ */
+@ApplicationScoped
+public class ConsumerBackpressure {
+
+    private static final Logger LOG = Logger.getLogger(ConsumerBackpressure.class);
+
+    static final String CHANNEL = "sms-requests";
+
+    @Inject
+    KafkaClientService kafkaClientService;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        meterRegistry.gauge("sms_consumer_paused", paused, p -> p.get() ? 1 : 0);
+    }
+
+    /**
+     * Pause all assigned partitions, if not already paused
+     */
+    public void pause() {
+        if (!paused.compareAndSet(false, true)) {
+            return;
+        }
+        KafkaConsumer<Object, Object> consumer = kafkaClientService.getConsumer(CHANNEL);
+        if (consumer == null) {
+            paused.set(false);
+            return;
+        }
+        consumer.pause().subscribe().with(
+                partitions -> LOG.infof("Paused consumption of %s", partitions),
+                error -> {
+                    paused.set(false);
+                    LOG.errorf(error, "Failed to pause Kafka consumer for channel %s", CHANNEL);
+                });
+        meterRegistry.counter("sms_consumer_pauses_total").increment();
+    }
+
+    /**
+     * Resume the paused partitions, if currently paused
+     */
+    public void resume() {
+        if (!paused.compareAndSet(true, false)) {
+            return;
+        }
+        KafkaConsumer<Object, Object> consumer = kafkaClientService.getConsumer(CHANNEL);
+        if (consumer == null) {
+            return;
+        }
+        consumer.resume().subscribe().with(
+                ignored -> LOG.infof("Resumed consumption of channel %s", CHANNEL),
+                error -> {
+                    paused.set(true);
+                    LOG.errorf(error, "Failed to resume Kafka consumer for channel %s", CHANNEL);
+                });
+    }
+
+    public boolean isPaused() {
+        return paused.get();
+    }
+}
@@ -0,0 +1,157 @@
+package com.intercom.processor.consumer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Set of message IDs this instance consumed recently, to drop records the outbox relay published
+ * twice. Both copies land on the same partition, so they reach this consumer unless a rebalance
+ * moved the partition in between. The set is kept in this instance's heap and is not shared: a
+ * record re-read by another instance after a rebalance is processed again there.
+ * <p>
+ * IDs are stored as their two UUID longs in open-addressing tables (linear probing, 16 bytes
+ * per slot), so there is no object per entry. The set is split into time buckets: IDs are added
+ * to the newest one and looked up in all of them. When the newest bucket has covered
+ * window / buckets, or holds its share of maxEntries, the oldest bucket is cleared and becomes the
+ * newest. An ID is therefore remembered for at least window * (buckets - 1) / buckets, unless
+ * more than maxEntries IDs arrive within the window, in which case the window shrinks.
+ * <p>
+ * Not thread-safe; the consumer calls it from its single polling thread.
+ */
+public class RecentMessageIds {
+
+    private static final double MAX_LOAD = 0.75;
+
+    private final long[][] tables;
+    private final int[] sizes;
+    private final int mask;
+    private final int maxBucketEntries;
+    private final long bucketNanos;
+
+    private int newest;
+    private long newestStartedAt;
+
+    public RecentMessageIds(int maxEntries, int buckets, Duration window) {
+        this(maxEntries, buckets, window, System.nanoTime());
+    }
+
+    RecentMessageIds(int maxEntries, int buckets, Duration window, long startNanos) {
+        int bucketEntries = Math.max(1, (maxEntries + buckets - 1) / buckets);
+        int minSlots = (int) Math.ceil(bucketEntries / MAX_LOAD);
+        int slots = Math.max(2, Integer.highestOneBit(Math.max(1, minSlots - 1)) << 1);
+        this.tables = new long[buckets][2 * slots];
+        this.sizes = new int[buckets];
+        this.mask = slots - 1;
+        this.maxBucketEntries = bucketEntries;
+        this.bucketNanos = window.toNanos() / buckets;
+        this.newestStartedAt = startNanos;
+    }
+
+    /**
+     * Whether an ID was seen within the window, without recording it
+     */
+    public boolean contains(UUID messageId) {
+        long high = messageId.getMostSignificantBits();
+        long low = messageId.getLeastSignificantBits();
+        if ((high | low) == 0) {
+            return false;
+        }
+        for (int i = 0; i < tables.length; i++) {
+            if (contains(tables[i], high, low)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record an ID as seen
+     *
+     * @return true if the ID was not seen before within the window
+     */
+    public boolean add(UUID messageId) {
+        return add(messageId, System.nanoTime());
+    }
+
+    boolean add(UUID messageId, long nowNanos) {
+        long high = messageId.getMostSignificantBits();
+        long low = messageId.getLeastSignificantBits();
+        if ((high | low) == 0) {
+            // Empty slots are all zero; the nil UUID is never a message ID
+            return true;
+        }
+        if (contains(messageId)) {
+            return false;
+        }
+
+        rotateIfDue(nowNanos);
+        insert(tables[newest], high, low);
+        sizes[newest]++;
+        return true;
+    }
+
+    /**
+     * Number of IDs currently remembered
+     */
+    public int size() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Heap used by the tables, for the startup log
+     */
+    public long sizeBytes() {
+        return (long) tables.length * tables[0].length * Long.BYTES;
+    }
+
+    private boolean contains(long[] table, long high, long low) {
+        for (int slot = slot(high, low); ; slot = (slot + 1) & mask) {
+            long storedHigh = table[2 * slot];
+            long storedLow = table[2 * slot + 1];
+            if ((storedHigh | storedLow) == 0) {
+                return false;
+            }
+            if (storedHigh == high && storedLow == low) {
+                return true;
+            }
+        }
+    }
+
+    private void insert(long[] table, long high, long low) {
+        int slot = slot(high, low);
+        while ((table[2 * slot] | table[2 * slot + 1]) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[2 * slot] = high;
+        table[2 * slot + 1] = low;
+    }
+
+    private void rotateIfDue(long now) {
+        if (sizes[newest] < maxBucketEntries && now - newestStartedAt < bucketNanos) {
+            return;
+        }
+        newest = (newest + 1) % tables.length;
+        Arrays.fill(tables[newest], 0L);
+        sizes[newest] = 0;
+        newestStartedAt = now;
+    }
+
+    /**
+     * Home slot of an ID. Both halves are mixed (murmur3 finalizer) because the high half of a
+     * UUIDv7 is mostly timestamp and IDs consumed together share it.
+     */
+    private int slot(long high, long low) {
+        long hash = high * 0x9E3779B97F4A7C15L ^ low;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+}
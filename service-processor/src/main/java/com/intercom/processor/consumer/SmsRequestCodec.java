@@ -0,0 +1,122 @@
+package com.intercom.processor.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.processor.dto.SmsRequestMessage;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+/**
+ * Decoder for SMS request payloads on the sms.requests topic.
+ * <p>
+ * Reads both the original JSON payload and the binary v1 format written by the SMS service:
+ * {@code magic(1) version(1) flags(1) uuid(16) sender recipient status text createdAt [retryAt]},
+ * where strings are an unsigned 16-bit byte length followed by UTF-8 bytes and timestamps are
+ * epoch milliseconds (UTC). The format is detected from the first byte, which can never start
+ * a JSON document.
+ */
+public final class SmsRequestCodec {
+
+    public static final byte MAGIC = (byte) 0xB5;
+    public static final byte VERSION_1 = 1;
+
+    static final int FLAG_RETRY = 1;
+    static final int FLAG_RETRY_AT = 1 << 1;
+    private static final int KNOWN_FLAGS = FLAG_RETRY | FLAG_RETRY_AT;
+
+    private static final int MAX_SENDER_BYTES = 64;
+    private static final int MAX_STATUS_BYTES = 16;
+    private static final int MAX_TEXT_BYTES = 1600 * 4;
+
+    private SmsRequestCodec() {
+    }
+
+    /**
+     * Whether the payload is in the binary format
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload != null && payload.length > 0 && payload[0] == MAGIC;
+    }
+
+    /**
+     * Decode a payload in either wire format
+     */
+    public static SmsRequestMessage decode(ObjectMapper objectMapper, byte[] payload) throws IOException {
+        if (isBinary(payload)) {
+            return decodeBinary(payload);
+        }
+        return objectMapper.readValue(payload, SmsRequestMessage.class);
+    }
+
+    /**
+     * Decode a binary payload, checking the magic byte, version, field bounds and trailing bytes
+     */
+    public static SmsRequestMessage decodeBinary(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        try {
+            if (buffer.get() != MAGIC) {
+                throw malformed("bad magic byte");
+            }
+            byte version = buffer.get();
+            if (version != VERSION_1) {
+                throw malformed("unsupported version " + version);
+            }
+            int flags = buffer.get() & 0xFF;
+            if ((flags & ~KNOWN_FLAGS) != 0) {
+                throw malformed("unknown flags 0x" + Integer.toHexString(flags));
+            }
+            
+            UUID messageId = new UUID(buffer.getLong(), buffer.getLong());
+            
+            SmsRequestMessage message = new SmsRequestMessage(
+                    messageId.toString(),
+                    getField(buffer, "sender", MAX_SENDER_BYTES),
+                    getField(buffer, "recipient", MAX_SENDER_BYTES),
+                    null);
+            message.setStatus(getField(buffer, "status", MAX_STATUS_BYTES));
+            message.setText(getField(buffer, "text", MAX_TEXT_BYTES));
+            message.setCreatedAt(fromEpochMillis(buffer.getLong()));
+            message.setRetry((flags & FLAG_RETRY) != 0);
+            if ((flags & FLAG_RETRY_AT) != 0) {
+                message.setRetryAt(fromEpochMillis(buffer.getLong()));
+            }
+            
+            if (buffer.hasRemaining()) {
+                throw malformed(buffer.remaining() + " trailing bytes");
+            }
+            return message;
+            
+        } catch (BufferUnderflowException e) {
+            throw malformed("truncated payload of " + payload.length + " bytes");
+        }
+    }
+
+    private static String getField(ByteBuffer buffer, String field, int maxBytes) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length > maxBytes) {
+            throw malformed("field '" + field + "' is " + length + " bytes, maximum is " + maxBytes);
+        }
+        if (length > buffer.remaining()) {
+            throw malformed("field '" + field + "' overruns the payload");
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static String fromEpochMillis(long epochMillis) {
+        long seconds = Math.floorDiv(epochMillis, 1000L);
+        int nanos = (int) Math.floorMod(epochMillis, 1000L) * 1_000_000;
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    private static IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("Malformed binary SMS request: " + reason);
+    }
+}
@@ -5,11 +5,18 @@ import com.intercom.processor.dto.SmsRequestMessage;
 import com.intercom.processor.service.ProcessingService;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.jboss.logging.Logger;
 
+import java.time.Duration;
+import java.util.UUID;
+
 /**
  * Kafka consumer for SMS processing requests
  */
@@ -24,26 +31,96 @@ public class SmsRequestConsumer {
     @Inject
     ProcessingService processingService;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "processor.dedup.enabled", defaultValue = "true")
+    boolean dedupEnabled;
+
+    @ConfigProperty(name = "processor.dedup.max-entries", defaultValue = "1000000")
+    int dedupMaxEntries;
+
+    @ConfigProperty(name = "processor.dedup.buckets", defaultValue = "4")
+    int dedupBuckets;
+
+    @ConfigProperty(name = "processor.dedup.window", defaultValue = "30m")
+    Duration dedupWindow;
+
+    private RecentMessageIds recentMessageIds;
+    private Counter uniqueRequests;
+    private Counter duplicateRequests;
+    private Counter unkeyedRequests;
+
+    @PostConstruct
+    void init() {
+        if (!dedupEnabled) {
+            return;
+        }
+        recentMessageIds = new RecentMessageIds(dedupMaxEntries, dedupBuckets, dedupWindow);
+        LOG.infof("Dropping duplicate SMS requests seen within %s, up to %d IDs in %d KiB",
+                dedupWindow, dedupMaxEntries, recentMessageIds.sizeBytes() / 1024);
+        
+        uniqueRequests = meterRegistry.counter("sms_requests_dedup_total", "result", "unique");
+        duplicateRequests = meterRegistry.counter("sms_requests_dedup_total", "result", "duplicate");
+        unkeyedRequests = meterRegistry.counter("sms_requests_dedup_total", "result", "unkeyed");
+        meterRegistry.gauge("sms_requests_dedup_entries", recentMessageIds, RecentMessageIds::size);
+    }
+
     /**
-     * Consume SMS requests from Kafka and process them
+     * Consume SMS requests from Kafka and process them.
+     * Payloads may be JSON or binary while producers migrate between wire formats.
      */
     @Incoming("sms-requests")
     @Timed(value = "sms_processing_duration", description = "Time taken to process SMS messages")
     @Counted(value = "sms_processing_attempts", description = "Number of SMS processing attempts")
-    public void processSmsRequest(String message) {
-        LOG.infof("Received SMS request message: %s", message);
+    public void processSmsRequest(byte[] message) {
+        boolean binary = SmsRequestCodec.isBinary(message);
+        LOG.debugf("Received SMS request message: %d bytes, format=%s", message.length, binary ? "binary" : "json");
         
         try {
             // Parse the message
-            SmsRequestMessage smsRequest = objectMapper.readValue(message, SmsRequestMessage.class);
+            SmsRequestMessage smsRequest = SmsRequestCodec.decode(objectMapper, message);
+            meterRegistry.counter("sms_requests_decoded_total", "format", binary ? "binary" : "json").increment();
+            UUID messageId = dedupKey(smsRequest);
+            if (messageId != null && recentMessageIds.contains(messageId)) {
+                duplicateRequests.increment();
+                LOG.infof("Skipping duplicate SMS request for message ID: %s", smsRequest.getMessageId());
+                return;
+            }
             LOG.infof("Processing SMS request for message ID: %s", smsRequest.getMessageId());
             
-            // Process the message asynchronously
-            processingService.processMessage(smsRequest);
+            // Process the message asynchronously; only an accepted message counts as consumed, so a
+            // redelivery of one that failed here is processed again
+            if (processingService.processMessage(smsRequest) && messageId != null) {
+                recentMessageIds.add(messageId);
+                uniqueRequests.increment();
+            }
             
         } catch (Exception e) {
-            LOG.errorf(e, "Failed to process SMS request message: %s", message);
+            LOG.errorf(e, "Failed to process SMS request message of %d bytes", message.length);
+            meterRegistry.counter("sms_requests_decode_failed_total").increment();
             // In a real implementation, this could be sent to a dead letter queue
         }
     }
+
+    /**
+     * ID to drop duplicates of this request by, or null if duplicates are not tracked.
+     * IDs that are not UUIDs cannot be tracked and are always processed.
+     */
+    private UUID dedupKey(SmsRequestMessage smsRequest) {
+        if (recentMessageIds == null) {
+            return null;
+        }
+        if (smsRequest.getMessageId() == null) {
+            unkeyedRequests.increment();
+            return null;
+        }
+        
+        try {
+            return UUID.fromString(smsRequest.getMessageId());
+        } catch (IllegalArgumentException e) {
+            unkeyedRequests.increment();
+            return null;
+        }
+    }
 }
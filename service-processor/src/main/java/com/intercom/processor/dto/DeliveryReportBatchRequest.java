@@ -0,0 +1,38 @@
+package com.intercom.processor.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO for a batch of delivery report callbacks to SMS service
+ */
+public class DeliveryReportBatchRequest {
+
+    @JsonProperty("reports")
+    private List<DeliveryReportRequest> reports;
+
+    // Constructors
+    public DeliveryReportBatchRequest() {
+    }
+
+    public DeliveryReportBatchRequest(List<DeliveryReportRequest> reports) {
+        this.reports = reports;
+    }
+
+    // Getters and Setters
+    public List<DeliveryReportRequest> getReports() {
+        return reports;
+    }
+
+    public void setReports(List<DeliveryReportRequest> reports) {
+        this.reports = reports;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryReportBatchRequest{" +
+                "size=" + (reports != null ? reports.size() : 0) +
+                '}';
+    }
+}
@@ -0,0 +1,49 @@
+package com.intercom.processor.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO for the SMS service's answer to a delivery report batch
+ */
+public class DeliveryReportBatchResponse {
+
+    @JsonProperty("applied_count")
+    private int appliedCount;
+
+    @JsonProperty("failed_ids")
+    private List<String> failedIds;
+
+    @JsonProperty("already_final_ids")
+    private List<String> alreadyFinalIds;
+
+    // Constructors
+    public DeliveryReportBatchResponse() {
+    }
+
+    // Getters and Setters
+    public int getAppliedCount() {
+        return appliedCount;
+    }
+
+    public void setAppliedCount(int appliedCount) {
+        this.appliedCount = appliedCount;
+    }
+
+    public List<String> getFailedIds() {
+        return failedIds;
+    }
+
+    public void setFailedIds(List<String> failedIds) {
+        this.failedIds = failedIds;
+    }
+
+    public List<String> getAlreadyFinalIds() {
+        return alreadyFinalIds;
+    }
+
+    public void setAlreadyFinalIds(List<String> alreadyFinalIds) {
+        this.alreadyFinalIds = alreadyFinalIds;
+    }
+}
@@ -0,0 +1,62 @@
+package com.intercom.processor.producer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.processor.dto.DeliveryReportRequest;
+import io.smallrye.reactive.messaging.kafka.KafkaRecord;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.OnOverflow;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Producer for publishing delivery reports to the sms.delivery-reports topic
+ */
+@ApplicationScoped
+public class DeliveryReportProducer {
+
+    private static final Logger LOG = Logger.getLogger(DeliveryReportProducer.class);
+
+    @Inject
+    @Channel("delivery-reports")
+    @OnOverflow(value = OnOverflow.Strategy.BUFFER, bufferSize = 10000)
+    Emitter<byte[]> deliveryReportEmitter;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    /**
+     * Publish a delivery report, keyed by message ID so every report for a message lands on
+     * the same partition and is applied in order.
+     *
+     * @return a stage completed when the broker has acknowledged the record, or failed if
+     *         the report could not be serialized, buffered or written
+     */
+    public CompletionStage<Void> send(DeliveryReportRequest deliveryReport) {
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(deliveryReport);
+            
+            LOG.debugf("Publishing delivery report: messageId=%s, status=%s",
+                      deliveryReport.getMessageId(), deliveryReport.getStatus());
+            
+            deliveryReportEmitter.send(KafkaRecord.of(deliveryReport.getMessageId(), payload)
+                    .withAck(() -> {
+                        ack.complete(null);
+                        return CompletableFuture.completedFuture(null);
+                    })
+                    .withNack(reason -> {
+                        ack.completeExceptionally(reason);
+                        return CompletableFuture.completedFuture(null);
+                    }));
+            
+        } catch (Exception e) {
+            ack.completeExceptionally(e);
+        }
+        return ack;
+    }
+}
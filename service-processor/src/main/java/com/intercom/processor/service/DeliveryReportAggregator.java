@@ -0,0 +1,221 @@
+package com.intercom.processor.service;
+
+import com.intercom.processor.client.SmsServiceClient;
+import com.intercom.processor.dto.DeliveryReportBatchRequest;
+import com.intercom.processor.dto.DeliveryReportBatchResponse;
+import com.intercom.processor.dto.DeliveryReportRequest;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Collects delivery reports and sends them to SMS service in batches.
+ * A batch is flushed once it holds processor.callback.batch.max-size reports or every
+ * processor.callback.batch.max-delay-ms, whichever comes first. Failed reports are re-queued
+ * with exponential backoff according to processor.retry.*: if SMS service answered, only the
+ * reports it could not apply (failed_ids) are retried; if the request itself failed, the whole
+ * batch is.
+ */
+@ApplicationScoped
+public class DeliveryReportAggregator {
+
+    private static final Logger LOG = Logger.getLogger(DeliveryReportAggregator.class);
+
+    @Inject
+    @RestClient
+    SmsServiceClient smsServiceClient;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "processor.callback.batch.max-size", defaultValue = "200")
+    int maxBatchSize;
+
+    @ConfigProperty(name = "processor.callback.batch.max-delay-ms", defaultValue = "50")
+    long maxDelayMs;
+
+    @ConfigProperty(name = "processor.callback.batch.sender-threads", defaultValue = "2")
+    int senderThreads;
+
+    @ConfigProperty(name = "processor.retry.max-attempts", defaultValue = "3")
+    int maxAttempts;
+
+    @ConfigProperty(name = "processor.retry.backoff-multiplier", defaultValue = "2")
+    double backoffMultiplier;
+
+    @ConfigProperty(name = "processor.retry.initial-interval", defaultValue = "1000")
+    long initialIntervalMs;
+
+    private final Object lock = new Object();
+
+    private List<PendingReport> buffer = new ArrayList<>();
+
+    private final AtomicInteger awaitingRetry = new AtomicInteger();
+
+    private ScheduledThreadPoolExecutor sender;
+
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        sender = new ScheduledThreadPoolExecutor(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sms-callback-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleWithFixedDelay(this::flush, maxDelayMs, maxDelayMs, TimeUnit.MILLISECONDS);
+
+        batchSizes = DistributionSummary.builder("callback_batch_size")
+                .description("Number of delivery reports per callback batch")
+                .register(meterRegistry);
+        meterRegistry.gauge("callback_buffered", this, aggregator -> aggregator.buffered());
+        meterRegistry.gauge("callback_awaiting_retry", awaitingRetry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+        sender.shutdown();
+        try {
+            sender.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue a delivery report for the next batch
+     */
+    public void submit(DeliveryReportRequest deliveryReport) {
+        enqueue(new PendingReport(deliveryReport, 1));
+    }
+
+    private void enqueue(PendingReport report) {
+        List<PendingReport> full = null;
+        synchronized (lock) {
+            buffer.add(report);
+            if (buffer.size() >= maxBatchSize) {
+                full = buffer;
+                buffer = new ArrayList<>(maxBatchSize);
+            }
+        }
+        if (full != null) {
+            List<PendingReport> batch = full;
+            try {
+                sender.execute(() -> send(batch));
+            } catch (RejectedExecutionException e) {
+                // Shutting down: send on the caller's thread rather than drop the batch
+                send(batch);
+            }
+        }
+    }
+
+    /**
+     * Send whatever is buffered, regardless of size
+     */
+    void flush() {
+        List<PendingReport> batch;
+        synchronized (lock) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            batch = buffer;
+            buffer = new ArrayList<>(maxBatchSize);
+        }
+        send(batch);
+    }
+
+    private void send(List<PendingReport> batch) {
+        List<DeliveryReportRequest> reports = batch.stream()
+                .map(PendingReport::report)
+                .collect(Collectors.toList());
+        batchSizes.record(reports.size());
+
+        try {
+            LOG.debugf("Sending batch of %d delivery reports", reports.size());
+            DeliveryReportBatchResponse response = smsServiceClient.sendDeliveryReports(
+                    new DeliveryReportBatchRequest(reports));
+
+            Set<String> failedIds = response.getFailedIds() != null
+                    ? new HashSet<>(response.getFailedIds()) : Set.of();
+            meterRegistry.counter("callback_success_total").increment(reports.size() - failedIds.size());
+            if (response.getAlreadyFinalIds() != null && !response.getAlreadyFinalIds().isEmpty()) {
+                LOG.debugf("%d delivery reports ignored, message status already final",
+                          response.getAlreadyFinalIds().size());
+            }
+            if (!failedIds.isEmpty()) {
+                LOG.warnf("SMS service could not apply %d of %d delivery reports", failedIds.size(), reports.size());
+                retry(batch.stream()
+                        .filter(pending -> failedIds.contains(pending.report().getMessageId()))
+                        .collect(Collectors.toList()));
+            }
+
+        } catch (Exception e) {
+            LOG.errorf(e, "Failed to send batch of %d delivery reports", reports.size());
+            retry(batch);
+        }
+    }
+
+    /**
+     * Re-queue reports after their backoff, dropping those that have used all attempts
+     */
+    private void retry(List<PendingReport> reports) {
+        Map<Integer, List<PendingReport>> byAttempt = reports.stream()
+                .collect(Collectors.groupingBy(PendingReport::attempts));
+
+        for (Map.Entry<Integer, List<PendingReport>> entry : byAttempt.entrySet()) {
+            int attempts = entry.getKey();
+            List<PendingReport> pending = entry.getValue();
+
+            if (attempts >= maxAttempts) {
+                LOG.errorf("Giving up on %d delivery reports after %d attempts", pending.size(), attempts);
+                meterRegistry.counter("callback_failure_total").increment(pending.size());
+                continue;
+            }
+
+            meterRegistry.counter("callback_retry_total").increment(pending.size());
+            awaitingRetry.addAndGet(pending.size());
+            long delay = (long) (initialIntervalMs * Math.pow(backoffMultiplier, attempts - 1));
+            try {
+                sender.schedule(() -> {
+                    awaitingRetry.addAndGet(-pending.size());
+                    pending.forEach(report -> enqueue(report.nextAttempt()));
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                awaitingRetry.addAndGet(-pending.size());
+                LOG.errorf("Shutting down, dropping %d delivery reports awaiting retry", pending.size());
+                meterRegistry.counter("callback_failure_total").increment(pending.size());
+            }
+        }
+    }
+
+    int buffered() {
+        synchronized (lock) {
+            return buffer.size();
+        }
+    }
+
+    private record PendingReport(DeliveryReportRequest report, int attempts) {
+        PendingReport nextAttempt() {
+            return new PendingReport(report, attempts + 1);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.intercom.processor.service;
+
+import io.smallrye.config.ConfigMapping;
+
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+
+/**
+ * Per-destination limits, keyed by E.164 prefix, e.g.
+ * <pre>
+ * processor.destination-limits.prefixes."+30".max-concurrent=200
+ * processor.destination-limits.prefixes."+3069".tps=50
+ * </pre>
+ * A message uses the limit of the longest prefix matching its recipient; "+" matches every number.
+ * Recipients without a matching prefix are not limited. A prefix is an optional "+" followed by
+ * digits; startup fails on any other key, or on two keys for the same prefix such as "30" and "+30".
+ */
+@ConfigMapping(prefix = "processor.destination-limits")
+public interface DestinationLimitsConfig {
+
+    Map<String, Limit> prefixes();
+
+    interface Limit {
+
+        /**
+         * Messages to this prefix being delivered at once; unlimited if unset
+         */
+        OptionalInt maxConcurrent();
+
+        /**
+         * Deliveries to this prefix started per second; unlimited if unset
+         */
+        OptionalDouble tps();
+    }
+}
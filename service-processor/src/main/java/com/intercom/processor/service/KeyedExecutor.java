@@ -0,0 +1,65 @@
+package com.intercom.processor.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Executor that runs tasks for the same key one after another, in submission order,
+ * while tasks for different keys run in parallel on the delegate executor.
+ * <p>
+ * Each key has a lane represented by the future of its last submitted task. A new task is
+ * chained onto that tail, and the lane is removed once its tail completes, so memory is
+ * proportional to the number of keys with work in flight. Tasks may be asynchronous: the
+ * next task of a lane starts only when the stage returned by the previous one completes,
+ * so no thread is held while a task waits.
+ */
+public class KeyedExecutor {
+
+    private static final CompletableFuture<Void> IDLE = CompletableFuture.completedFuture(null);
+
+    private final Executor delegate;
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> lanes = new ConcurrentHashMap<>();
+
+    public KeyedExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Submit a synchronous task to the lane for the given key
+     *
+     * @return a future completed when the task has run
+     */
+    public CompletableFuture<Void> submit(String key, Runnable task) {
+        return submitAsync(key, () -> {
+            task.run();
+            return IDLE;
+        });
+    }
+
+    /**
+     * Submit an asynchronous task to the lane for the given key.
+     * The task is started on the delegate executor and the lane stays busy until
+     * the returned stage completes.
+     *
+     * @return a future completed when the stage returned by the task completes
+     */
+    public CompletableFuture<Void> submitAsync(String key, Supplier<? extends CompletionStage<Void>> task) {
+        CompletableFuture<Void> next = lanes.compute(key, (k, tail) -> (tail == null ? IDLE : tail)
+                // Start after the previous task whatever its outcome, so one failure does not stall the lane
+                .handleAsync((result, error) -> task.get(), delegate)
+                .thenCompose(stage -> stage));
+        
+        next.whenComplete((result, error) -> lanes.remove(key, next));
+        return next;
+    }
+
+    /**
+     * Number of keys that currently have queued or running tasks
+     */
+    public int activeLanes() {
+        return lanes.size();
+    }
+}
@@ -0,0 +1,234 @@
+package com.intercom.processor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.util.Timer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Holds deliveries to a destination prefix back while the prefix is at its concurrency or TPS limit,
+ * the way carriers throttle per country or network.
+ * <p>
+ * Prefixes are kept in a digit trie, so finding the longest match walks the recipient once without
+ * allocating. Each prefix has a gate with a FIFO queue: a delivery over the limit waits there as a
+ * future, holding no thread, and is started when a delivery to the same prefix completes or, for the
+ * TPS limit, from the delivery timer once the next start is due. TPS is enforced with GCRA, allowing
+ * up to a tenth of a second's starts at once so that timer ticks do not lose throughput.
+ */
+public class PrefixLimiter {
+
+    private static final CompletableFuture<Void> ADMITTED = CompletableFuture.completedFuture(null);
+    private static final Pattern VALID_PREFIX = Pattern.compile("^\\+?\\d*$");
+
+    private final Node root = new Node();
+    private final Timer timer;
+    private final LongSupplier nanoClock;
+
+    public PrefixLimiter(Map<String, DestinationLimitsConfig.Limit> limits, Timer timer, MeterRegistry meterRegistry) {
+        this(limits, timer, meterRegistry, System::nanoTime);
+    }
+
+    PrefixLimiter(Map<String, DestinationLimitsConfig.Limit> limits, Timer timer, MeterRegistry meterRegistry,
+                  LongSupplier nanoClock) {
+        this.timer = timer;
+        this.nanoClock = nanoClock;
+        normalise(limits).forEach((digits, entry) -> {
+            DestinationLimitsConfig.Limit limit = entry.getValue();
+            Gate gate = new Gate(entry.getKey(), limit.maxConcurrent().orElse(Integer.MAX_VALUE),
+                    limit.tps().orElse(0), meterRegistry);
+            Node node = root;
+            for (int i = 0; i < digits.length(); i++) {
+                int digit = digits.charAt(i) - '0';
+                if (node.children[digit] == null) {
+                    node.children[digit] = new Node();
+                }
+                node = node.children[digit];
+            }
+            node.gate = gate;
+        });
+    }
+
+    /**
+     * Configured limits keyed by their prefix digits, so that a typo fails startup instead of
+     * silently limiting a different prefix
+     *
+     * @throws IllegalArgumentException if a prefix is not an optional "+" followed by digits, or two
+     *                                  prefixes differ only by the "+"
+     */
+    private static Map<String, Map.Entry<String, DestinationLimitsConfig.Limit>> normalise(
+            Map<String, DestinationLimitsConfig.Limit> limits) {
+        Map<String, Map.Entry<String, DestinationLimitsConfig.Limit>> byDigits = new HashMap<>();
+        limits.forEach((prefix, limit) -> {
+            if (!VALID_PREFIX.matcher(prefix).matches()) {
+                throw new IllegalArgumentException("Invalid destination limit prefix \"" + prefix
+                        + "\": expected an optional \"+\" followed by digits");
+            }
+            String digits = prefix.startsWith("+") ? prefix.substring(1) : prefix;
+            Map.Entry<String, DestinationLimitsConfig.Limit> previous = byDigits.putIfAbsent(digits, Map.entry(prefix, limit));
+            if (previous != null) {
+                throw new IllegalArgumentException("Destination limit prefixes \"" + previous.getKey()
+                        + "\" and \"" + prefix + "\" are the same prefix");
+            }
+        });
+        return byDigits;
+    }
+
+    /**
+     * Start a delivery once the recipient's prefix is within its limits
+     *
+     * @param delivery starts the delivery; the prefix slot is held until its stage completes
+     * @return a future completed when the delivery has completed
+     */
+    public CompletableFuture<Void> submit(String recipient, Supplier<CompletableFuture<Void>> delivery) {
+        Gate gate = match(recipient);
+        if (gate == null) {
+            return delivery.get();
+        }
+
+        CompletableFuture<Void> done = gate.acquire().thenCompose(ignored -> delivery.get());
+        done.whenComplete((result, error) -> gate.release());
+        return done;
+    }
+
+    /**
+     * Gate of the longest configured prefix of the recipient, ignoring "+" and other non-digits
+     */
+    private Gate match(String recipient) {
+        Node node = root;
+        Gate longest = root.gate;
+        for (int i = 0; recipient != null && i < recipient.length(); i++) {
+            int digit = recipient.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                continue;
+            }
+            node = node.children[digit];
+            if (node == null) {
+                break;
+            }
+            if (node.gate != null) {
+                longest = node.gate;
+            }
+        }
+        return longest;
+    }
+
+    private static class Node {
+        final Node[] children = new Node[10];
+        Gate gate;
+    }
+
+    private class Gate {
+
+        private final int maxConcurrent;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final Counter queued;
+        private final ArrayDeque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+        private int active;
+        private long nextStart = nanoClock.getAsLong();
+        private boolean drainScheduled;
+
+        Gate(String prefix, int maxConcurrent, double tps, MeterRegistry meterRegistry) {
+            this.maxConcurrent = maxConcurrent;
+            this.intervalNanos = tps > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / tps) : 0;
+            this.toleranceNanos = intervalNanos * Math.max(1, (long) Math.ceil(tps / 10));
+
+            Tags tags = Tags.of("prefix", prefix);
+            this.queued = meterRegistry.counter("sms_prefix_queued_total", tags);
+            meterRegistry.gauge("sms_prefix_queue_depth", tags, this, Gate::depth);
+            meterRegistry.gauge("sms_prefix_active", tags, this, Gate::active);
+        }
+
+        CompletableFuture<Void> acquire() {
+            synchronized (this) {
+                if (waiting.isEmpty() && tryStart(nanoClock.getAsLong())) {
+                    return ADMITTED;
+                }
+                CompletableFuture<Void> admitted = new CompletableFuture<>();
+                waiting.add(admitted);
+                queued.increment();
+                scheduleDrain(nanoClock.getAsLong());
+                return admitted;
+            }
+        }
+
+        void release() {
+            synchronized (this) {
+                active--;
+            }
+            drain();
+        }
+
+        /**
+         * Start queued deliveries while the limits allow; the futures are completed outside the lock
+         * because completing one runs the start of its delivery
+         */
+        private void drain() {
+            List<CompletableFuture<Void>> admitted = new ArrayList<>();
+            synchronized (this) {
+                long now = nanoClock.getAsLong();
+                while (!waiting.isEmpty() && tryStart(now)) {
+                    admitted.add(waiting.poll());
+                }
+                scheduleDrain(now);
+            }
+            admitted.forEach(future -> future.complete(null));
+        }
+
+        /**
+         * Take a concurrency slot and a TPS token if both are available
+         */
+        private boolean tryStart(long now) {
+            if (active >= maxConcurrent) {
+                return false;
+            }
+            if (intervalNanos > 0) {
+                long next = (nextStart - now > 0 ? nextStart : now) + intervalNanos;
+                if (next - now > toleranceNanos) {
+                    return false;
+                }
+                nextStart = next;
+            }
+            active++;
+            return true;
+        }
+
+        /**
+         * If deliveries wait only for the TPS limit, drain again when the next start is due.
+         * Deliveries waiting for a concurrency slot are drained by release().
+         */
+        private void scheduleDrain(long now) {
+            if (waiting.isEmpty() || drainScheduled || active >= maxConcurrent || intervalNanos == 0) {
+                return;
+            }
+            drainScheduled = true;
+            long delay = Math.max(0, nextStart + intervalNanos - toleranceNanos - now);
+            timer.newTimeout(timeout -> {
+                synchronized (this) {
+                    drainScheduled = false;
+                }
+                drain();
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized int depth() {
+            return waiting.size();
+        }
+
+        private synchronized int active() {
+            return active;
+        }
+    }
+}
@@ -1,17 +1,30 @@
 package com.intercom.processor.service;
 
 import com.intercom.processor.client.SmsServiceClient;
+import com.intercom.processor.consumer.ConsumerBackpressure;
 import com.intercom.processor.dto.DeliveryReportRequest;
 import com.intercom.processor.dto.SmsRequestMessage;
+import com.intercom.processor.producer.DeliveryReportProducer;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.jboss.logging.Logger;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service for processing SMS messages and simulating delivery
@@ -21,6 +34,8 @@ public class ProcessingService {
 
     private static final Logger LOG = Logger.getLogger(ProcessingService.class);
 
+    private static final String REJECTED_REASON = "Processor overloaded";
+
     @Inject
     @RestClient
     SmsServiceClient smsServiceClient;
@@ -37,60 +52,265 @@ public class ProcessingService {
     @ConfigProperty(name = "processor.simulation.success-rate", defaultValue = "0.8")
     double successRate;
 
+    @Inject
+    ConsumerBackpressure consumerBackpressure;
+
+    @Inject
+    DeliveryReportAggregator deliveryReportAggregator;
+
+    @Inject
+    DeliveryReportProducer deliveryReportProducer;
+
+    @ConfigProperty(name = "processor.callback.batch.enabled", defaultValue = "true")
+    boolean batchCallbacks;
+
+    @ConfigProperty(name = "processor.callback.transport", defaultValue = "kafka")
+    CallbackTransport callbackTransport;
+
+    @ConfigProperty(name = "processor.worker.threads", defaultValue = "32")
+    int workerThreads;
+
+    @ConfigProperty(name = "processor.worker.queue-capacity", defaultValue = "100000")
+    int queueCapacity;
+
+    @ConfigProperty(name = "processor.worker.max-in-flight", defaultValue = "100000")
+    int maxInFlight;
+
+    @ConfigProperty(name = "processor.worker.resume-ratio", defaultValue = "0.5")
+    double resumeRatio;
+
+    @ConfigProperty(name = "processor.simulation.timer-tick-ms", defaultValue = "10")
+    long timerTickMs;
+
+    @ConfigProperty(name = "processor.simulation.timer-wheel-size", defaultValue = "512")
+    int timerWheelSize;
+
+    @Inject
+    DestinationLimitsConfig destinationLimits;
+
+    private ThreadPoolExecutor workerPool;
+
+    private HashedWheelTimer deliveryTimer;
+
+    private KeyedExecutor keyedExecutor;
+
+    private PrefixLimiter prefixLimiter;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private int resumeThreshold;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        workerPool = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "sms-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        keyedExecutor = new KeyedExecutor(workerPool);
+        deliveryTimer = new HashedWheelTimer(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "sms-delivery-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                timerTickMs, TimeUnit.MILLISECONDS, timerWheelSize);
+        prefixLimiter = new PrefixLimiter(destinationLimits.prefixes(), deliveryTimer, meterRegistry);
+        resumeThreshold = (int) (maxInFlight * resumeRatio);
+        if (maxInFlight > queueCapacity) {
+            LOG.warnf("processor.worker.max-in-flight (%d) exceeds queue-capacity (%d); "
+                    + "new messages may be rejected when the queue fills", maxInFlight, queueCapacity);
+        }
+        
+        meterRegistry.gauge("sms_processing_active_lanes", keyedExecutor, KeyedExecutor::activeLanes);
+        meterRegistry.gauge("sms_processing_in_flight", inFlight);
+        meterRegistry.gauge("sms_processing_queued", workerPool, pool -> pool.getQueue().size());
+        meterRegistry.gauge("sms_processing_scheduled", deliveryTimer, HashedWheelTimer::pendingTimeouts);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        deliveryTimer.stop();
+        workerPool.shutdown();
+    }
+
     /**
-     * Process an SMS message asynchronously
+     * Process an SMS message asynchronously.
+     * Messages are ordered per recipient: each recipient has its own lane, and lanes for
+     * different recipients run in parallel. The simulated provider delay is a timer-wheel
+     * timeout rather than a sleeping thread, so in-flight messages hold no thread. Deliveries
+     * to a destination prefix at its processor.destination-limits wait in that prefix's queue,
+     * also without a thread, and count as in flight. Once
+     * processor.worker.max-in-flight messages are in flight the Kafka consumer is paused,
+     * and it is resumed when in-flight work drops to the resume ratio.
+     *
+     * @return true if the message was accepted, false if the worker pool rejected it and it was
+     *         reported FAILED
      */
-    public void processMessage(SmsRequestMessage smsRequest) {
+    public boolean processMessage(SmsRequestMessage smsRequest) {
         LOG.infof("Starting processing for message ID: %s", smsRequest.getMessageId());
         
-        // Process asynchronously to avoid blocking the Kafka consumer
-        CompletableFuture.runAsync(() -> {
-            try {
-                // Simulate processing delay
-                int delay = ThreadLocalRandom.current().nextInt(minDelayMs, maxDelayMs + 1);
-                Thread.sleep(delay);
-                
-                // Simulate success/failure based on configured success rate
-                boolean isSuccess = ThreadLocalRandom.current().nextDouble() < successRate;
-                
-                // Create delivery report
-                DeliveryReportRequest deliveryReport;
-                if (isSuccess) {
-                    deliveryReport = new DeliveryReportRequest(
-                        smsRequest.getMessageId(),
-                        "SENT",
-                        null
-                    );
-                    LOG.infof("Message %s processed successfully", smsRequest.getMessageId());
-                    meterRegistry.counter("sms_processing_success_total").increment();
-                } else {
-                    String failureReason = generateRandomFailureReason();
-                    deliveryReport = new DeliveryReportRequest(
-                        smsRequest.getMessageId(),
-                        "FAILED",
-                        failureReason
-                    );
-                    LOG.infof("Message %s processing failed: %s", smsRequest.getMessageId(), failureReason);
-                    meterRegistry.counter("sms_processing_failure_total").increment();
-                }
-                
-                // Send callback to SMS service
-                sendDeliveryReport(deliveryReport);
-                
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                LOG.errorf("Message processing interrupted for ID: %s", smsRequest.getMessageId());
-            } catch (Exception e) {
-                LOG.errorf(e, "Unexpected error processing message ID: %s", smsRequest.getMessageId());
-                meterRegistry.counter("sms_processing_error_total").increment();
+        String key = smsRequest.getRecipient() != null ? smsRequest.getRecipient() : smsRequest.getMessageId();
+        
+        if (inFlight.incrementAndGet() >= maxInFlight) {
+            consumerBackpressure.pause();
+        }
+        
+        try {
+            // Process asynchronously to avoid blocking the Kafka consumer
+            keyedExecutor.submitAsync(key,
+                    () -> prefixLimiter.submit(smsRequest.getRecipient(), () -> simulateDelivery(smsRequest)))
+                    .whenComplete((result, error) -> {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        if (cause instanceof RejectedExecutionException) {
+                            onRejected(smsRequest);
+                        }
+                        onCompleted();
+                    });
+            return true;
+        } catch (RejectedExecutionException e) {
+            onRejected(smsRequest);
+            onCompleted();
+            return false;
+        }
+    }
+
+    /**
+     * Release an in-flight slot and resume the consumer once enough work has drained
+     */
+    private void onCompleted() {
+        if (inFlight.decrementAndGet() <= resumeThreshold && consumerBackpressure.isPaused()) {
+            consumerBackpressure.resume();
+        }
+    }
+
+    /**
+     * Report a message the worker pool could not take as FAILED. Its record is already
+     * acknowledged, so without a report it would stay PENDING.
+     */
+    private void onRejected(SmsRequestMessage smsRequest) {
+        LOG.errorf("Worker queue full, rejected message ID: %s", smsRequest.getMessageId());
+        meterRegistry.counter("sms_processing_rejected_total").increment();
+        try {
+            sendDeliveryReport(new DeliveryReportRequest(smsRequest.getMessageId(), "FAILED", REJECTED_REASON));
+        } catch (Exception e) {
+            LOG.errorf(e, "Failed to report rejected message ID: %s", smsRequest.getMessageId());
+            meterRegistry.counter("sms_processing_error_total").increment();
+        }
+    }
+
+    /**
+     * Simulate provider delivery: schedule the outcome on the delivery timer after a random
+     * delay drawn from processor.simulation.*, then report it from the worker pool
+     *
+     * @return a stage completed once the delivery report has been handed off
+     */
+    private CompletableFuture<Void> simulateDelivery(SmsRequestMessage smsRequest) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        int delay = ThreadLocalRandom.current().nextInt(minDelayMs, maxDelayMs + 1);
+        
+        deliveryTimer.newTimeout(timeout -> handOff(smsRequest, done), delay, TimeUnit.MILLISECONDS);
+        
+        return done;
+    }
+
+    /**
+     * Run the outcome of a delivery on the worker pool. The delivery is already admitted and
+     * counted in flight, so a full queue does not reject it: the hand-off is retried on the next
+     * timer tick, and only fails once the pool has shut down.
+     */
+    private void handOff(SmsRequestMessage smsRequest, CompletableFuture<Void> done) {
+        try {
+            workerPool.execute(() -> {
+                completeDelivery(smsRequest);
+                done.complete(null);
+            });
+        } catch (RejectedExecutionException e) {
+            if (workerPool.isShutdown()) {
+                done.completeExceptionally(e);
+                return;
             }
-        });
+            meterRegistry.counter("sms_processing_handoff_deferred_total").increment();
+            deliveryTimer.newTimeout(timeout -> handOff(smsRequest, done), timerTickMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
-     * Send delivery report back to SMS service
+     * Decide the simulated outcome and send the delivery report
+     */
+    private void completeDelivery(SmsRequestMessage smsRequest) {
+        try {
+            // Simulate success/failure based on configured success rate
+            boolean isSuccess = ThreadLocalRandom.current().nextDouble() < successRate;
+            
+            // Create delivery report
+            DeliveryReportRequest deliveryReport;
+            if (isSuccess) {
+                deliveryReport = new DeliveryReportRequest(
+                    smsRequest.getMessageId(),
+                    "SENT",
+                    null
+                );
+                LOG.infof("Message %s processed successfully", smsRequest.getMessageId());
+                meterRegistry.counter("sms_processing_success_total").increment();
+            } else {
+                String failureReason = generateRandomFailureReason();
+                deliveryReport = new DeliveryReportRequest(
+                    smsRequest.getMessageId(),
+                    "FAILED",
+                    failureReason
+                );
+                LOG.infof("Message %s processing failed: %s", smsRequest.getMessageId(), failureReason);
+                meterRegistry.counter("sms_processing_failure_total").increment();
+            }
+            
+            // Send callback to SMS service
+            sendDeliveryReport(deliveryReport);
+            
+        } catch (Exception e) {
+            LOG.errorf(e, "Unexpected error processing message ID: %s", smsRequest.getMessageId());
+            meterRegistry.counter("sms_processing_error_total").increment();
+        }
+    }
+
+    /**
+     * Send delivery report back to SMS service.
+     * With the kafka transport the report is published to sms.delivery-reports, so it survives
+     * SMS service being slow or restarting; if the broker cannot take it, it falls back to REST.
      */
     private void sendDeliveryReport(DeliveryReportRequest deliveryReport) {
+        if (callbackTransport == CallbackTransport.KAFKA) {
+            deliveryReportProducer.send(deliveryReport).whenComplete((ignored, error) -> {
+                if (error == null) {
+                    meterRegistry.counter("callback_published_total").increment();
+                } else {
+                    LOG.warnf(error, "Failed to publish delivery report for message %s, falling back to REST",
+                             deliveryReport.getMessageId());
+                    meterRegistry.counter("callback_publish_failed_total").increment();
+                    sendDeliveryReportOverRest(deliveryReport);
+                }
+            });
+        } else {
+            sendDeliveryReportOverRest(deliveryReport);
+        }
+    }
+
+    /**
+     * Send delivery report over HTTP, batched through the aggregator unless
+     * processor.callback.batch.enabled is false. Unbatched, SMS service answers 409 for a message
+     * that is already final and 404 for an unknown one; neither is a failed callback.
+     */
+    private void sendDeliveryReportOverRest(DeliveryReportRequest deliveryReport) {
+        if (batchCallbacks) {
+            deliveryReportAggregator.submit(deliveryReport);
+            return;
+        }
+        
         try {
             LOG.infof("Sending delivery report for message %s with status %s", 
                      deliveryReport.getMessageId(), deliveryReport.getStatus());
@@ -100,6 +320,22 @@ public class ProcessingService {
             LOG.infof("Delivery report sent successfully for message %s", deliveryReport.getMessageId());
             meterRegistry.counter("callback_success_total").increment();
             
+        } catch (WebApplicationException e) {
+            int status = e.getResponse().getStatus();
+            if (status == Response.Status.CONFLICT.getStatusCode()) {
+                // A repeated report for a message that is already SENT or FAILED; the batch path counts these the same way
+                LOG.debugf("Delivery report for message %s ignored, message status already final",
+                          deliveryReport.getMessageId());
+                meterRegistry.counter("callback_success_total").increment();
+            } else if (status == Response.Status.NOT_FOUND.getStatusCode()) {
+                LOG.warnf("SMS service does not know message %s, dropping its delivery report",
+                         deliveryReport.getMessageId());
+                meterRegistry.counter("callback_not_found_total").increment();
+            } else {
+                LOG.errorf(e, "Failed to send delivery report for message %s", deliveryReport.getMessageId());
+                meterRegistry.counter("callback_failure_total").increment();
+            }
+            
         } catch (Exception e) {
             LOG.errorf(e, "Failed to send delivery report for message %s", deliveryReport.getMessageId());
             meterRegistry.counter("callback_failure_total").increment();
@@ -125,4 +361,12 @@ public class ProcessingService {
         int index = ThreadLocalRandom.current().nextInt(reasons.length);
         return reasons[index];
     }
+
+    /**
+     * How delivery reports reach SMS service
+     */
+    public enum CallbackTransport {
+        REST,
+        KAFKA
+    }
 }
@@ -0,0 +1,110 @@
+package com.intercom.processor.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentMessageIdsTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(4);
+    private static final long BUCKET_NANOS = WINDOW.toNanos() / 4;
+
+    @Test
+    void dropsAnIdSeenBefore() {
+        RecentMessageIds ids = new RecentMessageIds(1000, 4, WINDOW, 0);
+        UUID id = UUID.randomUUID();
+
+        assertTrue(ids.add(id, 0));
+        assertFalse(ids.add(id, 1));
+        assertEquals(1, ids.size());
+    }
+
+    @Test
+    void containsDoesNotRecordTheId() {
+        RecentMessageIds ids = new RecentMessageIds(1000, 4, WINDOW, 0);
+        UUID id = UUID.randomUUID();
+
+        // The consumer looks an id up before processing and records it only once processing accepted it
+        assertFalse(ids.contains(id));
+        assertFalse(ids.contains(id));
+        assertEquals(0, ids.size());
+
+        assertTrue(ids.add(id, 0));
+        assertTrue(ids.contains(id));
+        assertFalse(ids.contains(new UUID(0, 0)));
+    }
+
+    @Test
+    void remembersIdsAcrossBucketRotations() {
+        RecentMessageIds ids = new RecentMessageIds(1000, 4, WINDOW, 0);
+        UUID id = UUID.randomUUID();
+        ids.add(id, 0);
+
+        // Each add after a bucket's time rotates once; the id stays in its bucket for three rotations
+        for (int rotation = 1; rotation <= 3; rotation++) {
+            assertTrue(ids.add(UUID.randomUUID(), rotation * BUCKET_NANOS));
+            assertFalse(ids.add(id, rotation * BUCKET_NANOS), "forgotten after " + rotation + " rotations");
+        }
+
+        // The fourth rotation clears the id's bucket
+        assertTrue(ids.add(UUID.randomUUID(), 4 * BUCKET_NANOS));
+        assertTrue(ids.add(id, 4 * BUCKET_NANOS));
+    }
+
+    @Test
+    void rotatesWhenTheNewestBucketIsFull() {
+        // 4 buckets of 2 ids each, well within the time window
+        RecentMessageIds ids = new RecentMessageIds(8, 4, WINDOW, 0);
+        List<UUID> added = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            UUID id = UUID.randomUUID();
+            assertTrue(ids.add(id, i));
+            added.add(id);
+        }
+        assertEquals(8, ids.size());
+
+        // The ninth id rotates out the bucket holding the first two
+        assertTrue(ids.add(UUID.randomUUID(), 8));
+        assertEquals(7, ids.size());
+        assertTrue(ids.add(added.get(0), 9));
+        for (UUID id : added.subList(2, 8)) {
+            assertFalse(ids.add(id, 10));
+        }
+    }
+
+    @Test
+    void neverDropsTheNilUuid() {
+        RecentMessageIds ids = new RecentMessageIds(1000, 4, WINDOW, 0);
+        UUID nil = new UUID(0, 0);
+
+        assertTrue(ids.add(nil, 0));
+        assertTrue(ids.add(nil, 1));
+        assertEquals(0, ids.size());
+
+        // Nil is not stored (it would look like an empty slot), and other ids are unaffected
+        UUID id = UUID.randomUUID();
+        assertTrue(ids.add(id, 2));
+        assertFalse(ids.add(id, 3));
+    }
+
+    @Test
+    void handlesIdsThatShareTheirHighBits() {
+        // UUIDv7 ids consumed together share their timestamp half
+        RecentMessageIds ids = new RecentMessageIds(10_000, 4, WINDOW, 0);
+        long high = 0x018F3A2B4C5D7000L;
+        for (long low = 1; low <= 2_500; low++) {
+            assertTrue(ids.add(new UUID(high, low), 0));
+        }
+        for (long low = 1; low <= 2_500; low++) {
+            assertFalse(ids.add(new UUID(high, low), 0));
+        }
+        assertEquals(2_500, ids.size());
+    }
+}
@@ -0,0 +1,229 @@
+package com.intercom.processor.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.processor.dto.SmsRequestMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmsRequestCodecTest {
+
+    private static final String MESSAGE_ID = "018e4a3b-5c6d-7e8f-9a0b-1c2d3e4f5a6b";
+    private static final String SENDER = "+306912345678";
+    private static final String RECIPIENT = "+447700900123";
+    private static final String TEXT = "Καλημέρα! ✓";
+    private static final String CREATED_AT = "2024-03-15T10:30:45.123";
+    private static final String RETRY_AT = "2024-03-15T10:35:45.123";
+
+    /*
+     * Payloads written by the SMS service's encoder for the message above. SmsRequestCodecTest in
+     * service-sms pins the encoder to these same bytes and JSON, so a change on either side that
+     * breaks the other fails one of the two tests.
+     */
+    private static final String FIRST_SEND_HEX = "b50100"
+            + "018e4a3b5c6d7e8f9a0b1c2d3e4f5a6b"
+            + "000d2b333036393132333435363738"
+            + "000d2b343437373030393030313233"
+            + "000750454e44494e47"
+            + "0015ce9aceb1cebbceb7cebcceadcf81ceb12120e29c93"
+            + "0000018e41aa0483";
+    private static final String RETRY_HEX = "b50103"
+            + "018e4a3b5c6d7e8f9a0b1c2d3e4f5a6b"
+            + "000d2b333036393132333435363738"
+            + "000d2b343437373030393030313233"
+            + "000750454e44494e47"
+            + "0015ce9aceb1cebbceb7cebcceadcf81ceb12120e29c93"
+            + "0000018e41aa0483"
+            + "0000018e41ae9863";
+    private static final String FIRST_SEND_JSON = "{\"messageId\":\"" + MESSAGE_ID + "\",\"sender\":\"" + SENDER
+            + "\",\"recipient\":\"" + RECIPIENT + "\",\"text\":\"" + TEXT + "\",\"status\":\"PENDING\","
+            + "\"createdAt\":\"" + CREATED_AT + "\"}";
+    private static final String RETRY_JSON = "{\"messageId\":\"" + MESSAGE_ID + "\",\"sender\":\"" + SENDER
+            + "\",\"recipient\":\"" + RECIPIENT + "\",\"text\":\"" + TEXT + "\",\"status\":\"PENDING\","
+            + "\"createdAt\":\"" + CREATED_AT + "\",\"isRetry\":true,\"retryAt\":\"" + RETRY_AT + "\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void decodesEveryFieldOfAFirstSendFromTheSmsService() throws Exception {
+        SmsRequestMessage binary = SmsRequestCodec.decode(objectMapper, HexFormat.of().parseHex(FIRST_SEND_HEX));
+        SmsRequestMessage json = SmsRequestCodec.decode(objectMapper, FIRST_SEND_JSON.getBytes(StandardCharsets.UTF_8));
+
+        for (SmsRequestMessage message : new SmsRequestMessage[] {binary, json}) {
+            assertMessage(message);
+            assertFalse(message.isRetry());
+            assertNull(message.getRetryAt());
+        }
+    }
+
+    @Test
+    void decodesEveryFieldOfARetryFromTheSmsService() throws Exception {
+        SmsRequestMessage binary = SmsRequestCodec.decode(objectMapper, HexFormat.of().parseHex(RETRY_HEX));
+        SmsRequestMessage json = SmsRequestCodec.decode(objectMapper, RETRY_JSON.getBytes(StandardCharsets.UTF_8));
+
+        for (SmsRequestMessage message : new SmsRequestMessage[] {binary, json}) {
+            assertMessage(message);
+            assertTrue(message.isRetry());
+            assertEquals(RETRY_AT, message.getRetryAt());
+        }
+    }
+
+    @Test
+    void roundTripsEmptyAndLongestFields() {
+        String text = "€".repeat(1600 * 4 / 3);
+        byte[] payload = new Payload(SmsRequestCodec.FLAG_RETRY)
+                .field("s".repeat(64)).field("").field("SENT").field(text).timestamp(-1).bytes();
+
+        SmsRequestMessage message = SmsRequestCodec.decodeBinary(payload);
+
+        assertEquals("s".repeat(64), message.getSender());
+        assertEquals("", message.getRecipient());
+        assertEquals("SENT", message.getStatus());
+        assertEquals(text, message.getText());
+        // Epoch milliseconds before 1970 round down, not towards zero
+        assertEquals("1969-12-31T23:59:59.999", message.getCreatedAt());
+        // A retry without a retry time is still a retry
+        assertTrue(message.isRetry());
+        assertNull(message.getRetryAt());
+    }
+
+    @Test
+    void tellsTheFormatsApartByTheFirstByte() {
+        assertTrue(SmsRequestCodec.isBinary(HexFormat.of().parseHex(FIRST_SEND_HEX)));
+        assertFalse(SmsRequestCodec.isBinary(FIRST_SEND_JSON.getBytes(StandardCharsets.UTF_8)));
+        assertFalse(SmsRequestCodec.isBinary(new byte[0]));
+        assertFalse(SmsRequestCodec.isBinary(null));
+    }
+
+    @Test
+    void rejectsABadMagicByte() {
+        byte[] payload = HexFormat.of().parseHex(FIRST_SEND_HEX);
+        payload[0] = (byte) 0xB6;
+
+        assertMalformed(payload, "bad magic byte");
+    }
+
+    @Test
+    void rejectsAnUnsupportedVersion() {
+        byte[] payload = HexFormat.of().parseHex(FIRST_SEND_HEX);
+        payload[1] = 2;
+
+        assertMalformed(payload, "unsupported version 2");
+    }
+
+    @Test
+    void rejectsUnknownFlags() {
+        byte[] payload = HexFormat.of().parseHex(FIRST_SEND_HEX);
+        payload[2] = 1 << 2;
+
+        assertMalformed(payload, "unknown flags 0x4");
+    }
+
+    @Test
+    void rejectsTruncatedPayloads() {
+        byte[] payload = HexFormat.of().parseHex(RETRY_HEX);
+
+        // Every cut, whether inside the header, the id, a length, a string or a timestamp
+        for (int length = 1; length < payload.length; length++) {
+            byte[] truncated = Arrays.copyOf(payload, length);
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                    () -> SmsRequestCodec.decodeBinary(truncated), "cut at " + length);
+            assertTrue(error.getMessage().contains("truncated payload") || error.getMessage().contains("overruns"),
+                    error.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsAFieldThatOverrunsThePayload() {
+        byte[] payload = new Payload(0).field(SENDER).length(20).raw(RECIPIENT).bytes();
+
+        assertMalformed(payload, "field 'recipient' overruns the payload");
+    }
+
+    @Test
+    void rejectsOversizedFields() {
+        assertMalformed(new Payload(0).length(65).bytes(), "field 'sender' is 65 bytes, maximum is 64");
+        assertMalformed(new Payload(0).field(SENDER).length(0xFFFF).bytes(),
+                "field 'recipient' is 65535 bytes, maximum is 64");
+        assertMalformed(new Payload(0).field(SENDER).field(RECIPIENT).length(17).bytes(),
+                "field 'status' is 17 bytes, maximum is 16");
+        assertMalformed(new Payload(0).field(SENDER).field(RECIPIENT).field("PENDING").length(6401).bytes(),
+                "field 'text' is 6401 bytes, maximum is 6400");
+    }
+
+    @Test
+    void rejectsTrailingBytes() {
+        byte[] payload = HexFormat.of().parseHex(FIRST_SEND_HEX + "00");
+        assertMalformed(payload, "1 trailing bytes");
+
+        // A retry time without the flag that announces it
+        byte[] unflagged = HexFormat.of().parseHex(RETRY_HEX);
+        unflagged[2] = SmsRequestCodec.FLAG_RETRY;
+        assertMalformed(unflagged, "8 trailing bytes");
+    }
+
+    private static void assertMessage(SmsRequestMessage message) {
+        assertEquals(MESSAGE_ID, message.getMessageId());
+        assertEquals(SENDER, message.getSender());
+        assertEquals(RECIPIENT, message.getRecipient());
+        assertEquals("PENDING", message.getStatus());
+        assertEquals(TEXT, message.getText());
+        assertEquals(CREATED_AT, message.getCreatedAt());
+    }
+
+    private static void assertMalformed(byte[] payload, String reason) {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> SmsRequestCodec.decodeBinary(payload));
+        assertEquals("Malformed binary SMS request: " + reason, error.getMessage());
+    }
+
+    /**
+     * Writes a binary payload field by field, including ones the SMS service would never write
+     */
+    private static class Payload {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Payload(int flags) {
+            out.write(SmsRequestCodec.MAGIC);
+            out.write(SmsRequestCodec.VERSION_1);
+            out.write(flags);
+            out.writeBytes(HexFormat.of().parseHex(MESSAGE_ID.replace("-", "")));
+        }
+
+        Payload field(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            return length(bytes.length).raw(value);
+        }
+
+        Payload length(int length) {
+            out.write(length >>> 8);
+            out.write(length);
+            return this;
+        }
+
+        Payload raw(String value) {
+            out.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        Payload timestamp(long epochMillis) {
+            out.writeBytes(ByteBuffer.allocate(Long.BYTES).putLong(epochMillis).array());
+            return this;
+        }
+
+        byte[] bytes() {
+            return out.toByteArray();
+        }
+    }
+}
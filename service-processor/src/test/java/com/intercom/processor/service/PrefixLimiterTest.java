@@ -0,0 +1,263 @@
+package com.intercom.processor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefixLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000 * MILLI);
+    private final ManualTimer timer = new ManualTimer();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /** Recipients in the order their deliveries were started */
+    private final List<String> started = new ArrayList<>();
+    /** Deliveries in progress, completed by the test */
+    private final Map<String, CompletableFuture<Void>> inProgress = new HashMap<>();
+
+    @Test
+    void usesTheLimitOfTheLongestMatchingPrefix() {
+        PrefixLimiter limiter = limiter(Map.of(
+                "+", concurrent(1),
+                "+30", concurrent(1),
+                "+3069", concurrent(1)));
+
+        submit(limiter, "+306911111");
+        submit(limiter, "+306922222");
+        submit(limiter, "+302101111");
+        submit(limiter, "+302102222");
+        submit(limiter, "+441111111");
+        submit(limiter, "+442222222");
+
+        // One start per prefix: a +3069 number does not take the +30 slot, nor a +30 number the "+" one
+        assertEquals(List.of("+306911111", "+302101111", "+441111111"), started);
+        assertEquals(1, queueDepth("+3069"));
+        assertEquals(1, queueDepth("+30"));
+        assertEquals(1, queueDepth("+"));
+    }
+
+    @Test
+    void doesNotLimitRecipientsWithoutAMatchingPrefix() {
+        PrefixLimiter limiter = limiter(Map.of("+30", concurrent(1)));
+
+        submit(limiter, "+441111111");
+        submit(limiter, "+442222222");
+        submit(limiter, null);
+
+        assertEquals(3, started.size());
+    }
+
+    @Test
+    void capsConcurrentDeliveriesAndStartsWaitingOnesInOrder() {
+        PrefixLimiter limiter = limiter(Map.of("+30", concurrent(2)));
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            done.add(submit(limiter, "+30690000000" + i));
+        }
+
+        assertEquals(List.of("+306900000000", "+306900000001"), started);
+        assertEquals(2, active("+30"));
+        assertEquals(3, queueDepth("+30"));
+        assertEquals(3, meterRegistry.get("sms_prefix_queued_total").tag("prefix", "+30").counter().count());
+
+        // Each completion frees one slot for the longest waiting delivery
+        complete("+306900000001");
+        assertEquals(List.of("+306900000000", "+306900000001", "+306900000002"), started);
+        complete("+306900000000");
+        complete("+306900000002");
+        assertEquals(List.of("+306900000000", "+306900000001", "+306900000002", "+306900000003",
+                "+306900000004"), started);
+        assertEquals(0, queueDepth("+30"));
+
+        complete("+306900000003");
+        complete("+306900000004");
+        assertEquals(0, active("+30"));
+        assertTrue(done.stream().allMatch(CompletableFuture::isDone));
+        assertTrue(timer.scheduled.isEmpty(), "a concurrency limit needs no timer");
+    }
+
+    @Test
+    void failedDeliveryReleasesItsSlot() {
+        PrefixLimiter limiter = limiter(Map.of("+30", concurrent(1)));
+        CompletableFuture<Void> first = submit(limiter, "+306911111");
+        submit(limiter, "+306922222");
+
+        inProgress.get("+306911111").completeExceptionally(new IllegalStateException("provider down"));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertEquals(List.of("+306911111", "+306922222"), started);
+    }
+
+    @Test
+    void pacesStartsAtTheTpsFromTheTimer() {
+        // 10 per second: one start every 100 ms
+        PrefixLimiter limiter = limiter(Map.of("+30", tps(10)));
+        for (int i = 0; i < 3; i++) {
+            submit(limiter, "+30690000000" + i);
+        }
+
+        assertEquals(List.of("+306900000000"), started);
+        assertEquals(100 * MILLI, timer.nextDelayNanos());
+
+        // A completion before the next start is due starts nothing
+        clock.addAndGet(50 * MILLI);
+        complete("+306900000000");
+        assertEquals(1, started.size());
+
+        clock.addAndGet(50 * MILLI);
+        timer.fire();
+        assertEquals(List.of("+306900000000", "+306900000001"), started);
+        assertEquals(100 * MILLI, timer.nextDelayNanos());
+
+        clock.addAndGet(100 * MILLI);
+        timer.fire();
+        assertEquals(List.of("+306900000000", "+306900000001", "+306900000002"), started);
+        assertTrue(timer.scheduled.isEmpty());
+    }
+
+    @Test
+    void allowsATenthOfASecondsStartsAtOnce() {
+        PrefixLimiter limiter = limiter(Map.of("+30", tps(100)));
+        for (int i = 0; i < 12; i++) {
+            submit(limiter, "+3069000000" + (10 + i));
+            complete("+3069000000" + (10 + i));
+        }
+
+        assertEquals(10, started.size());
+        assertEquals(2, queueDepth("+30"));
+
+        // A timer tick later, the waiting deliveries start in the order they were submitted
+        clock.addAndGet(20 * MILLI);
+        timer.fire();
+        assertEquals(List.of("+306900000020", "+306900000021"), started.subList(10, 12));
+    }
+
+    @Test
+    void rejectsPrefixesThatAreNotAPlusAndDigits() {
+        for (String prefix : List.of("+30-69", "30 69", "++30", "30+", "abc")) {
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                    () -> limiter(Map.of(prefix, concurrent(1))), prefix);
+            assertTrue(error.getMessage().contains(prefix), error.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsTwoKeysForTheSamePrefix() {
+        Map<String, DestinationLimitsConfig.Limit> limits = new LinkedHashMap<>();
+        limits.put("+30", concurrent(1));
+        limits.put("30", tps(10));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> limiter(limits));
+        assertTrue(error.getMessage().contains("\"+30\" and \"30\""), error.getMessage());
+        assertTrue(meterRegistry.getMeters().isEmpty(), "no gate is registered for a rejected configuration");
+    }
+
+    private PrefixLimiter limiter(Map<String, DestinationLimitsConfig.Limit> limits) {
+        return new PrefixLimiter(limits, timer, meterRegistry, clock::get);
+    }
+
+    private CompletableFuture<Void> submit(PrefixLimiter limiter, String recipient) {
+        return limiter.submit(recipient, () -> {
+            started.add(recipient);
+            CompletableFuture<Void> delivery = new CompletableFuture<>();
+            inProgress.put(recipient, delivery);
+            return delivery;
+        });
+    }
+
+    private void complete(String recipient) {
+        CompletableFuture<Void> delivery = inProgress.remove(recipient);
+        if (delivery != null) {
+            delivery.complete(null);
+        }
+    }
+
+    private double queueDepth(String prefix) {
+        return meterRegistry.get("sms_prefix_queue_depth").tag("prefix", prefix).gauge().value();
+    }
+
+    private double active(String prefix) {
+        return meterRegistry.get("sms_prefix_active").tag("prefix", prefix).gauge().value();
+    }
+
+    private static DestinationLimitsConfig.Limit concurrent(int maxConcurrent) {
+        return limit(OptionalInt.of(maxConcurrent), OptionalDouble.empty());
+    }
+
+    private static DestinationLimitsConfig.Limit tps(double tps) {
+        return limit(OptionalInt.empty(), OptionalDouble.of(tps));
+    }
+
+    private static DestinationLimitsConfig.Limit limit(OptionalInt maxConcurrent, OptionalDouble tps) {
+        return new DestinationLimitsConfig.Limit() {
+            @Override
+            public OptionalInt maxConcurrent() {
+                return maxConcurrent;
+            }
+
+            @Override
+            public OptionalDouble tps() {
+                return tps;
+            }
+        };
+    }
+
+    /**
+     * Keeps scheduled tasks until the test fires them
+     */
+    private static class ManualTimer implements Timer {
+
+        final List<TimerTask> scheduled = new ArrayList<>();
+        final List<Long> delays = new ArrayList<>();
+
+        @Override
+        public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+            scheduled.add(task);
+            delays.add(unit.toNanos(delay));
+            return null;
+        }
+
+        long nextDelayNanos() {
+            assertEquals(1, scheduled.size(), "scheduled drains");
+            return delays.get(0);
+        }
+
+        void fire() {
+            List<TimerTask> due = new ArrayList<>(scheduled);
+            scheduled.clear();
+            delays.clear();
+            for (TimerTask task : due) {
+                try {
+                    task.run(null);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        @Override
+        public Set<Timeout> stop() {
+            return Set.of();
+        }
+    }
+}
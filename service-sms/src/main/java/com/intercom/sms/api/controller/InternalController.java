@@ -1,7 +1,10 @@
 package com.intercom.sms.api.controller;
 
+import com.intercom.sms.api.dto.DeliveryReportBatchRequest;
+import com.intercom.sms.api.dto.DeliveryReportBatchResponse;
 import com.intercom.sms.api.dto.DeliveryReportRequest;
 import com.intercom.sms.api.dto.ErrorResponse;
+import com.intercom.sms.domain.model.StatusUpdateResult;
 import com.intercom.sms.service.MessageService;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
@@ -11,7 +14,10 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.logging.Logger;
@@ -30,6 +36,9 @@ public class InternalController {
     @Inject
     MessageService messageService;
 
+    @ConfigProperty(name = "sms.delivery-reports.max-batch-size", defaultValue = "1000")
+    int maxBatchSize;
+
     @POST
     @Path("/delivery-report")
     @Operation(summary = "Process delivery report", 
@@ -37,26 +46,38 @@ public class InternalController {
     @APIResponse(responseCode = "200", description = "Delivery report processed successfully")
     @APIResponse(responseCode = "400", description = "Invalid delivery report")
     @APIResponse(responseCode = "404", description = "Message not found")
+    @APIResponse(responseCode = "409", description = "Message status is already final")
     @APIResponse(responseCode = "500", description = "Internal server error")
     public Response processDeliveryReport(@Valid DeliveryReportRequest deliveryReport) {
         LOG.infof("Received delivery report for message %s with status %s", 
                  deliveryReport.getMessageId(), deliveryReport.getStatus());
         
         try {
-            boolean processed = messageService.processDeliveryReport(deliveryReport);
+            StatusUpdateResult result = messageService.processDeliveryReport(deliveryReport);
             
-            if (processed) {
-                LOG.infof("Delivery report processed successfully for message %s", 
-                         deliveryReport.getMessageId());
-                return Response.ok().build();
-            } else {
-                LOG.warnf("Message not found for delivery report: %s", deliveryReport.getMessageId());
-                return Response.status(Response.Status.NOT_FOUND)
-                        .entity(new ErrorResponse("MESSAGE_NOT_FOUND", 
-                                "Message not found: " + deliveryReport.getMessageId()))
-                        .build();
+            switch (result) {
+                case APPLIED:
+                    LOG.infof("Delivery report processed successfully for message %s", 
+                             deliveryReport.getMessageId());
+                    return Response.ok().build();
+                case ALREADY_FINAL:
+                    return Response.status(Response.Status.CONFLICT)
+                            .entity(new ErrorResponse("MESSAGE_ALREADY_FINAL", 
+                                    "Message status is already final: " + deliveryReport.getMessageId()))
+                            .build();
+                default:
+                    LOG.warnf("Message not found for delivery report: %s", deliveryReport.getMessageId());
+                    return Response.status(Response.Status.NOT_FOUND)
+                            .entity(new ErrorResponse("MESSAGE_NOT_FOUND", 
+                                    "Message not found: " + deliveryReport.getMessageId()))
+                            .build();
             }
             
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("INVALID_STATUS", e.getMessage()))
+                    .build();
+            
         } catch (Exception e) {
             LOG.errorf(e, "Failed to process delivery report for message %s", 
                       deliveryReport.getMessageId());
@@ -66,4 +87,42 @@ public class InternalController {
                     .build();
         }
     }
+
+    @POST
+    @Path("/delivery-reports")
+    @Operation(summary = "Process delivery reports in batch",
+               description = "Internal callback endpoint for applying many delivery reports at once. "
+                       + "Returns the IDs of messages that were not found or were already final.")
+    @APIResponse(
+        responseCode = "200",
+        description = "Batch processed; see failed_ids",
+        content = @Content(schema = @Schema(implementation = DeliveryReportBatchResponse.class))
+    )
+    @APIResponse(responseCode = "400", description = "Invalid or oversized batch")
+    @APIResponse(responseCode = "500", description = "Internal server error")
+    public Response processDeliveryReports(@Valid DeliveryReportBatchRequest batch) {
+        int size = batch.getReports().size();
+        LOG.infof("Received batch of %d delivery reports", size);
+        
+        if (size > maxBatchSize) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("BATCH_TOO_LARGE",
+                            "Batch contains " + size + " reports, maximum is " + maxBatchSize))
+                    .build();
+        }
+        
+        try {
+            DeliveryReportBatchResponse response = messageService.processDeliveryReports(batch.getReports());
+            LOG.infof("Delivery report batch processed: %d applied, %d failed", 
+                     response.getAppliedCount(), response.getFailedIds().size());
+            return Response.ok(response).build();
+            
+        } catch (Exception e) {
+            LOG.errorf(e, "Failed to process batch of %d delivery reports", size);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(new ErrorResponse("PROCESSING_ERROR", 
+                            "Failed to process delivery report batch"))
+                    .build();
+        }
+    }
 }
@@ -2,15 +2,26 @@ package com.intercom.sms.api.controller;
 
 import com.intercom.sms.api.dto.*;
 import com.intercom.sms.domain.model.MessageStatus;
+import com.intercom.sms.idempotency.IdempotencyKeyConflictException;
+import com.intercom.sms.idempotency.IdempotencyService;
+import com.intercom.sms.idempotency.IdempotentSend;
+import com.intercom.sms.ratelimit.RateLimitExceededException;
+import com.intercom.sms.ratelimit.SenderRateLimiter;
 import com.intercom.sms.service.MessageService;
+import com.intercom.sms.service.ReactiveMessageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
@@ -34,35 +45,166 @@ public class MessageController {
 
     private static final Logger LOG = Logger.getLogger(MessageController.class);
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
     @Inject
     MessageService messageService;
 
+    @Inject
+    ReactiveMessageService reactiveMessageService;
+
+    @Inject
+    IdempotencyService idempotencyService;
+
+    @Inject
+    SenderRateLimiter rateLimiter;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sms.batch.max-size", defaultValue = "500")
+    int maxBatchSize;
+
     @POST
-    @Operation(summary = "Send SMS message", description = "Send a new SMS message")
+    @Operation(summary = "Send SMS message",
+               description = "Send a new SMS message. Retries that carry the same Idempotency-Key within "
+                       + "sms.idempotency.ttl get the original message back instead of sending it again.")
     @APIResponse(
         responseCode = "202", 
-        description = "Message accepted for processing",
+        description = "Message accepted for processing, or the original message for a repeated Idempotency-Key "
+                + "(with Idempotent-Replayed: true)",
         content = @Content(schema = @Schema(implementation = MessageResponse.class))
     )
     @APIResponse(responseCode = "400", description = "Invalid request")
+    @APIResponse(responseCode = "422", description = "Idempotency-Key already used for a different message")
+    @APIResponse(responseCode = "429", description = "Sender is over its rate limit; see Retry-After")
     @APIResponse(responseCode = "500", description = "Internal server error")
-    public Response sendMessage(@Valid SendMessageRequest request) {
+    public Response sendMessage(
+            @Valid SendMessageRequest request,
+            
+            @Parameter(description = "Client-chosen key identifying this send across retries, unique per sender")
+            @HeaderParam(IDEMPOTENCY_KEY) @Size(min = 1, max = 255) String idempotencyKey) {
         LOG.infof("Received SMS request from %s to %s", request.getSender(), request.getRecipient());
+
+        long waitMillis = rateLimiter.tryAcquire(request.getSender());
+        if (waitMillis > 0) {
+            return rateLimited(request.getSender(), waitMillis);
+        }
         
         try {
-            MessageResponse response = messageService.sendMessage(request);
+            if (idempotencyKey == null) {
+                return accepted(messageService.sendMessage(request));
+            }
             
-            // Return 202 Accepted with Location header
-            URI location = URI.create("/v1/messages/" + response.getId());
+            IdempotentSend send = idempotencyService.send(idempotencyKey, request,
+                    () -> messageService.sendMessage(request));
+            if (send.replayed()) {
+                return Response.fromResponse(accepted(send.response()))
+                        .header(IDEMPOTENT_REPLAYED, "true")
+                        .build();
+            }
+            return accepted(send.response());
+                
+        } catch (IdempotencyKeyConflictException e) {
+            return Response.status(422)
+                    .entity(new ErrorResponse("IDEMPOTENCY_KEY_REUSED", e.getMessage()))
+                    .build();
             
-            return Response.accepted(response)
-                    .location(location)
+        } catch (Exception e) {
+            return sendFailed(e);
+        }
+    }
+
+    @POST
+    @Path("/reactive")
+    @Operation(summary = "Send SMS message (non-blocking)",
+               description = "Same contract as POST /v1/messages, served on the event loop with the "
+                       + "reactive database client instead of a worker thread and a JDBC connection")
+    @APIResponse(
+        responseCode = "202",
+        description = "Message accepted for processing",
+        content = @Content(schema = @Schema(implementation = MessageResponse.class))
+    )
+    @APIResponse(responseCode = "400", description = "Invalid request")
+    @APIResponse(responseCode = "429", description = "Sender is over its rate limit; see Retry-After")
+    @APIResponse(responseCode = "500", description = "Internal server error")
+    public Uni<Response> sendMessageReactive(@Valid SendMessageRequest request) {
+        LOG.infof("Received SMS request from %s to %s", request.getSender(), request.getRecipient());
+
+        return rateLimiter.tryAcquireAsync(request.getSender()).flatMap(waitMillis -> waitMillis > 0
+                ? Uni.createFrom().item(rateLimited(request.getSender(), waitMillis))
+                : reactiveMessageService.sendMessage(request)
+                        .map(this::accepted)
+                        .onFailure().recoverWithItem(this::sendFailed));
+    }
+
+    /**
+     * 202 Accepted with a Location header, for both send paths
+     */
+    private Response accepted(MessageResponse response) {
+        URI location = URI.create("/v1/messages/" + response.getId());
+
+        return Response.accepted(response)
+                .location(location)
+                .build();
+    }
+
+    /**
+     * 429 with Retry-After for a sender over its rate limit. The send paths check the limit before
+     * writing anything, so rejected requests take no database connection.
+     */
+    private Response rateLimited(String sender, long waitMillis) {
+        LOG.debugf("Sender %s is over its rate limit, retry in %d ms", sender, waitMillis);
+        meterRegistry.counter("sms_rate_limited_total").increment();
+        return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, SenderRateLimiter.retryAfterSeconds(waitMillis))
+                .entity(new ErrorResponse("RATE_LIMITED", "Sender " + sender + " is over its rate limit"))
+                .build();
+    }
+
+    private Response sendFailed(Throwable e) {
+        LOG.errorf(e, "Failed to send SMS message");
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(new ErrorResponse("INTERNAL_ERROR", "Failed to process SMS request"))
+                .build();
+    }
+
+    @POST
+    @Path("/batch")
+    @Operation(summary = "Send SMS messages in batch",
+               description = "Send up to sms.batch.max-size messages in one call. Each item is validated "
+                       + "individually and reported in the response in request order.")
+    @APIResponse(
+        responseCode = "202",
+        description = "Batch processed; see per-item results",
+        content = @Content(schema = @Schema(implementation = BatchSendMessageResponse.class))
+    )
+    @APIResponse(responseCode = "400", description = "Empty or oversized batch")
+    @APIResponse(responseCode = "429", description = "A sender is over its rate limit for this batch; see Retry-After")
+    @APIResponse(responseCode = "500", description = "Internal server error")
+    public Response sendMessageBatch(@Valid BatchSendMessageRequest request) {
+        int size = request.getMessages().size();
+        LOG.infof("Received SMS batch request with %d messages", size);
+
+        if (size > maxBatchSize) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("BATCH_TOO_LARGE",
+                            "Batch contains " + size + " messages, maximum is " + maxBatchSize))
                     .build();
-                    
+        }
+
+        try {
+            BatchSendMessageResponse response = messageService.sendMessageBatch(request.getMessages());
+            return Response.accepted(response).build();
+
+        } catch (RateLimitExceededException e) {
+            return rateLimited(e.getSender(), e.getWaitMillis());
+
         } catch (Exception e) {
-            LOG.errorf(e, "Failed to send SMS message");
+            LOG.errorf(e, "Failed to send SMS batch");
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(new ErrorResponse("INTERNAL_ERROR", "Failed to process SMS request"))
+                    .entity(new ErrorResponse("INTERNAL_ERROR", "Failed to process SMS batch request"))
                     .build();
         }
     }
@@ -140,16 +282,30 @@ public class MessageController {
         description = "Failed messages retrieved successfully",
         content = @Content(schema = @Schema(implementation = MessageListResponse.class))
     )
+    @APIResponse(responseCode = "400", description = "Invalid cursor")
     public Response getFailedMessages(
             @Parameter(description = "Page number (0-based)")
             @QueryParam("page") @DefaultValue("0") @Min(0) int page,
             
             @Parameter(description = "Page size")
-            @QueryParam("size") @DefaultValue("20") @Min(1) @Max(100) int size) {
+            @QueryParam("size") @DefaultValue("20") @Min(1) @Max(100) int size,
+            
+            @Parameter(description = "Cursor from next_cursor of the previous page; when set, page is ignored")
+            @QueryParam("cursor") String cursor,
+            
+            @Parameter(description = "Include total_count (defaults to true for page-based, false for cursor-based requests)")
+            @QueryParam("include_total") Boolean includeTotal) {
         
-        LOG.debugf("Retrieving failed messages: page=%d, size=%d", page, size);
+        LOG.debugf("Retrieving failed messages: page=%d, size=%d, cursor=%s", page, size, cursor);
         
-        MessageListResponse response = messageService.getFailedMessages(page, size);
-        return Response.ok(response).build();
+        try {
+            MessageListResponse response = messageService.getFailedMessages(page, size, cursor, includeTotal);
+            return Response.ok(response).build();
+            
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("INVALID_CURSOR", e.getMessage()))
+                    .build();
+        }
     }
 }
@@ -41,7 +41,7 @@ public class UserMessageController {
         description = "User messages retrieved successfully",
         content = @Content(schema = @Schema(implementation = MessageListResponse.class))
     )
-    @APIResponse(responseCode = "400", description = "Invalid user ID format")
+    @APIResponse(responseCode = "400", description = "Invalid user ID format or cursor")
     public Response getUserMessages(
             @Parameter(description = "User phone number", required = true, example = "+1234567890")
             @PathParam("userId") 
@@ -55,15 +55,27 @@ public class UserMessageController {
             @QueryParam("size") @DefaultValue("20") @Min(1) @Max(100) int size,
             
             @Parameter(description = "Filter by message status")
-            @QueryParam("status") MessageStatus status) {
+            @QueryParam("status") MessageStatus status,
+            
+            @Parameter(description = "Cursor from next_cursor of the previous page; when set, page is ignored")
+            @QueryParam("cursor") String cursor,
+            
+            @Parameter(description = "Include total_count (defaults to true for page-based, false for cursor-based requests)")
+            @QueryParam("include_total") Boolean includeTotal) {
         
-        LOG.debugf("Retrieving messages for user %s: page=%d, size=%d, status=%s", 
-                  userId, page, size, status);
+        LOG.debugf("Retrieving messages for user %s: page=%d, size=%d, status=%s, cursor=%s", 
+                  userId, page, size, status, cursor);
         
         try {
-            MessageListResponse response = messageService.getUserMessages(userId, page, size, status);
+            MessageListResponse response = messageService.getUserMessages(
+                    userId, page, size, status, cursor, includeTotal);
             return Response.ok(response).build();
             
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("INVALID_CURSOR", e.getMessage()))
+                    .build();
+            
         } catch (Exception e) {
             LOG.errorf(e, "Failed to retrieve messages for user %s", userId);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
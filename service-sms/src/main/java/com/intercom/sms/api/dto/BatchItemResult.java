@@ -0,0 +1,79 @@
+package com.intercom.sms.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO for the outcome of a single item in a batch send request
+ */
+public class BatchItemResult {
+
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String REJECTED = "REJECTED";
+
+    @JsonProperty("index")
+    private int index;
+
+    @JsonProperty("result")
+    private String result;
+
+    @JsonProperty("message")
+    private MessageResponse message;
+
+    @JsonProperty("errors")
+    private List<String> errors;
+
+    // Constructors
+    public BatchItemResult() {
+    }
+
+    public static BatchItemResult accepted(int index, MessageResponse message) {
+        BatchItemResult item = new BatchItemResult();
+        item.index = index;
+        item.result = ACCEPTED;
+        item.message = message;
+        return item;
+    }
+
+    public static BatchItemResult rejected(int index, List<String> errors) {
+        BatchItemResult item = new BatchItemResult();
+        item.index = index;
+        item.result = REJECTED;
+        item.errors = errors;
+        return item;
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    public MessageResponse getMessage() {
+        return message;
+    }
+
+    public void setMessage(MessageResponse message) {
+        this.message = message;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
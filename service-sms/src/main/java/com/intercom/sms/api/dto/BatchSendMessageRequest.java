@@ -0,0 +1,41 @@
+package com.intercom.sms.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+/**
+ * DTO for sending a batch of SMS messages in a single call.
+ * Items are validated individually so one bad entry does not reject the whole batch.
+ */
+public class BatchSendMessageRequest {
+
+    @NotEmpty(message = "At least one message is required")
+    @JsonProperty("messages")
+    private List<SendMessageRequest> messages;
+
+    // Constructors
+    public BatchSendMessageRequest() {
+    }
+
+    public BatchSendMessageRequest(List<SendMessageRequest> messages) {
+        this.messages = messages;
+    }
+
+    // Getters and Setters
+    public List<SendMessageRequest> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<SendMessageRequest> messages) {
+        this.messages = messages;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchSendMessageRequest{" +
+                "size=" + (messages != null ? messages.size() : 0) +
+                '}';
+    }
+}
@@ -0,0 +1,60 @@
+package com.intercom.sms.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO for batch send responses, with one result per submitted item in request order
+ */
+public class BatchSendMessageResponse {
+
+    @JsonProperty("results")
+    private List<BatchItemResult> results;
+
+    @JsonProperty("accepted_count")
+    private int acceptedCount;
+
+    @JsonProperty("rejected_count")
+    private int rejectedCount;
+
+    // Constructors
+    public BatchSendMessageResponse() {
+    }
+
+    public BatchSendMessageResponse(List<BatchItemResult> results) {
+        this.results = results;
+        for (BatchItemResult result : results) {
+            if (BatchItemResult.ACCEPTED.equals(result.getResult())) {
+                acceptedCount++;
+            } else {
+                rejectedCount++;
+            }
+        }
+    }
+
+    // Getters and Setters
+    public List<BatchItemResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<BatchItemResult> results) {
+        this.results = results;
+    }
+
+    public int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public void setAcceptedCount(int acceptedCount) {
+        this.acceptedCount = acceptedCount;
+    }
+
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public void setRejectedCount(int rejectedCount) {
+        this.rejectedCount = rejectedCount;
+    }
+}
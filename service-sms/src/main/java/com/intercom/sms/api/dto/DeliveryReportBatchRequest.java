@@ -0,0 +1,41 @@
+package com.intercom.sms.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+/**
+ * DTO for a batch of delivery report callbacks from processor service
+ */
+public class DeliveryReportBatchRequest {
+
+    @NotEmpty(message = "At least one delivery report is required")
+    @JsonProperty("reports")
+    private List<@Valid DeliveryReportRequest> reports;
+
+    // Constructors
+    public DeliveryReportBatchRequest() {
+    }
+
+    public DeliveryReportBatchRequest(List<DeliveryReportRequest> reports) {
+        this.reports = reports;
+    }
+
+    // Getters and Setters
+    public List<DeliveryReportRequest> getReports() {
+        return reports;
+    }
+
+    public void setReports(List<DeliveryReportRequest> reports) {
+        this.reports = reports;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryReportBatchRequest{" +
+                "size=" + (reports != null ? reports.size() : 0) +
+                '}';
+    }
+}
@@ -0,0 +1,58 @@
+package com.intercom.sms.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO for the outcome of a delivery report batch.
+ * Lists the message IDs that were not found, so the caller can retry only those, separately from
+ * the IDs whose status was already final (a retry would not change them).
+ */
+public class DeliveryReportBatchResponse {
+
+    @JsonProperty("applied_count")
+    private int appliedCount;
+
+    @JsonProperty("failed_ids")
+    private List<UUID> failedIds;
+
+    @JsonProperty("already_final_ids")
+    private List<UUID> alreadyFinalIds;
+
+    // Constructors
+    public DeliveryReportBatchResponse() {
+    }
+
+    public DeliveryReportBatchResponse(int appliedCount, List<UUID> failedIds, List<UUID> alreadyFinalIds) {
+        this.appliedCount = appliedCount;
+        this.failedIds = failedIds;
+        this.alreadyFinalIds = alreadyFinalIds;
+    }
+
+    // Getters and Setters
+    public int getAppliedCount() {
+        return appliedCount;
+    }
+
+    public void setAppliedCount(int appliedCount) {
+        this.appliedCount = appliedCount;
+    }
+
+    public List<UUID> getFailedIds() {
+        return failedIds;
+    }
+
+    public void setFailedIds(List<UUID> failedIds) {
+        this.failedIds = failedIds;
+    }
+
+    public List<UUID> getAlreadyFinalIds() {
+        return alreadyFinalIds;
+    }
+
+    public void setAlreadyFinalIds(List<UUID> alreadyFinalIds) {
+        this.alreadyFinalIds = alreadyFinalIds;
+    }
+}
@@ -3,6 +3,7 @@ package com.intercom.sms.api.dto;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.intercom.sms.domain.model.MessageStatus;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
 import java.util.UUID;
 
@@ -19,6 +20,7 @@ public class DeliveryReportRequest {
     @JsonProperty("status")
     private MessageStatus status;
 
+    @Size(max = 500, message = "Failure reason must be at most 500 characters")
     @JsonProperty("failure_reason")
     private String failureReason;
 
@@ -5,7 +5,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 
 /**
- * DTO for paginated message responses
+ * DTO for paginated message responses.
+ * Offset pages carry page and total_pages; total_count is only present when requested
+ * (always for offset pages unless turned off). next_cursor is set whenever another page may follow.
  */
 public class MessageListResponse {
 
@@ -13,16 +15,19 @@ public class MessageListResponse {
     private List<MessageResponse> messages;
 
     @JsonProperty("total_count")
-    private long totalCount;
+    private Long totalCount;
 
     @JsonProperty("page")
-    private int page;
+    private Integer page;
 
     @JsonProperty("page_size")
     private int pageSize;
 
     @JsonProperty("total_pages")
-    private int totalPages;
+    private Integer totalPages;
+
+    @JsonProperty("next_cursor")
+    private String nextCursor;
 
     // Constructors
     public MessageListResponse() {
@@ -30,11 +35,19 @@ public class MessageListResponse {
 
     public MessageListResponse(List<MessageResponse> messages, long totalCount, 
                               int page, int pageSize) {
+        this(messages, totalCount, page, pageSize, null);
+    }
+
+    public MessageListResponse(List<MessageResponse> messages, Long totalCount,
+                              Integer page, int pageSize, String nextCursor) {
         this.messages = messages;
         this.totalCount = totalCount;
         this.page = page;
         this.pageSize = pageSize;
-        this.totalPages = (int) Math.ceil((double) totalCount / pageSize);
+        this.nextCursor = nextCursor;
+        if (totalCount != null && page != null) {
+            this.totalPages = (int) Math.ceil((double) totalCount / pageSize);
+        }
     }
 
     // Getters and Setters
@@ -46,19 +59,19 @@ public class MessageListResponse {
         this.messages = messages;
     }
 
-    public long getTotalCount() {
+    public Long getTotalCount() {
         return totalCount;
     }
 
-    public void setTotalCount(long totalCount) {
+    public void setTotalCount(Long totalCount) {
         this.totalCount = totalCount;
     }
 
-    public int getPage() {
+    public Integer getPage() {
         return page;
     }
 
-    public void setPage(int page) {
+    public void setPage(Integer page) {
         this.page = page;
     }
 
@@ -70,11 +83,19 @@ public class MessageListResponse {
         this.pageSize = pageSize;
     }
 
-    public int getTotalPages() {
+    public Integer getTotalPages() {
         return totalPages;
     }
 
-    public void setTotalPages(int totalPages) {
+    public void setTotalPages(Integer totalPages) {
         this.totalPages = totalPages;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
@@ -2,6 +2,8 @@ package com.intercom.sms.api.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.intercom.sms.domain.model.ArchivedMessage;
+import com.intercom.sms.domain.model.Message;
 import com.intercom.sms.domain.model.MessageStatus;
 
 import java.time.LocalDateTime;
@@ -55,6 +57,38 @@ public class MessageResponse {
         this.updatedAt = updatedAt;
     }
 
+    /**
+     * Response for a Message entity
+     */
+    public static MessageResponse from(Message message) {
+        return new MessageResponse(
+                message.getId(),
+                message.getSender(),
+                message.getRecipient(),
+                message.getText(),
+                message.getStatus(),
+                message.getFailureReason(),
+                message.getCreatedAt(),
+                message.getUpdatedAt()
+        );
+    }
+
+    /**
+     * Response for an ArchivedMessage entity
+     */
+    public static MessageResponse from(ArchivedMessage message) {
+        return new MessageResponse(
+                message.getId(),
+                message.getSender(),
+                message.getRecipient(),
+                message.getText(),
+                message.getStatus(),
+                message.getFailureReason(),
+                message.getCreatedAt(),
+                message.getUpdatedAt()
+        );
+    }
+
     // Getters and Setters
     public UUID getId() {
         return id;
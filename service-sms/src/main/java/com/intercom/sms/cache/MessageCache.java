@@ -0,0 +1,35 @@
+package com.intercom.sms.cache;
+
+import com.intercom.sms.api.dto.MessageResponse;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Cache of message responses served by GET /v1/messages/{id}.
+ * Implementations never throw: a backend failure is logged and counted, and reads
+ * degrade to a miss so the caller falls through to the database.
+ */
+public interface MessageCache {
+
+    /**
+     * Cached response for a message, or empty on a miss
+     */
+    Optional<MessageResponse> get(UUID messageId);
+
+    /**
+     * Cache a response; how long it is kept depends on its status
+     */
+    void put(MessageResponse message);
+
+    /**
+     * Drop cached responses, e.g. after their status changed
+     */
+    void evict(Collection<UUID> messageIds);
+
+    /**
+     * Backend name used to tag metrics
+     */
+    String backend();
+}
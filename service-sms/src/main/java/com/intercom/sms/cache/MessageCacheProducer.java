@@ -0,0 +1,81 @@
+package com.intercom.sms.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.sms.api.dto.MessageResponse;
+import com.intercom.sms.domain.model.MessageStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.Produces;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+
+/**
+ * Builds the message cache: an in-heap near cache, backed by Redis when sms.cache.redis.enabled
+ * is set (with quarkus.redis.hosts pointing at the server). The Redis client is only looked up
+ * when it is enabled, so no Redis is needed locally.
+ */
+@ApplicationScoped
+public class MessageCacheProducer {
+
+    private static final Logger LOG = Logger.getLogger(MessageCacheProducer.class);
+
+    @Inject
+    Instance<RedisDataSource> redisDataSource;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sms.cache.redis.enabled", defaultValue = "false")
+    boolean redisEnabled;
+
+    @ConfigProperty(name = "sms.cache.near.max-entries", defaultValue = "10000")
+    long nearMaxEntries;
+
+    @ConfigProperty(name = "sms.cache.near.max-size", defaultValue = "32M")
+    MemorySize nearMaxSize;
+
+    @ConfigProperty(name = "sms.cache.ttl.pending", defaultValue = "2s")
+    Duration pendingTtl;
+
+    @ConfigProperty(name = "sms.cache.ttl.final", defaultValue = "5m")
+    Duration finalTtl;
+
+    @Produces
+    @ApplicationScoped
+    @Typed(NearMessageCache.class)
+    NearMessageCache nearMessageCache() {
+        NearMessageCache near = new NearMessageCache(nearMaxEntries, nearMaxSize.asLongValue(), this::ttl);
+        CaffeineCacheMetrics.monitor(meterRegistry, near.cache(), "messages");
+        return near;
+    }
+
+    @Produces
+    @ApplicationScoped
+    MessageCache messageCache(NearMessageCache near) {
+        if (redisEnabled) {
+            LOG.info("Caching messages in process and in Redis");
+            return new TieredMessageCache(near,
+                    new RedisMessageCache(redisDataSource.get(), objectMapper, meterRegistry, this::ttl));
+        }
+        LOG.info("Redis cache disabled, caching messages in process only");
+        return near;
+    }
+
+    /**
+     * PENDING messages change soon, so they are kept briefly; final ones never change again
+     */
+    private Duration ttl(MessageResponse message) {
+        return message.getStatus() == MessageStatus.PENDING ? pendingTtl : finalTtl;
+    }
+}
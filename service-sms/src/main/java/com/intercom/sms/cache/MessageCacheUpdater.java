@@ -0,0 +1,41 @@
+package com.intercom.sms.cache;
+
+import com.intercom.sms.messaging.CacheInvalidationProducer;
+import com.intercom.sms.service.MessageStatusChanged;
+import com.intercom.sms.service.MessagesCreated;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+/**
+ * Keeps the message cache in step with committed writes.
+ * Status changes are evicted here and, through a broadcast, on the other SMS service instances;
+ * evicting before the commit would let a concurrent read re-cache the old status.
+ * New messages go into the near cache only, as the first poll usually follows right away.
+ */
+@ApplicationScoped
+public class MessageCacheUpdater {
+
+    private static final Logger LOG = Logger.getLogger(MessageCacheUpdater.class);
+
+    @Inject
+    MessageCache messageCache;
+
+    @Inject
+    NearMessageCache nearMessageCache;
+
+    @Inject
+    CacheInvalidationProducer invalidationProducer;
+
+    void onStatusChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageStatusChanged event) {
+        LOG.debugf("Evicting %d messages from cache", event.messageIds().size());
+        messageCache.evict(event.messageIds());
+        invalidationProducer.broadcast(event.messageIds());
+    }
+
+    void onCreated(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessagesCreated event) {
+        event.messages().forEach(nearMessageCache::put);
+    }
+}
@@ -0,0 +1,99 @@
+package com.intercom.sms.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.intercom.sms.api.dto.MessageResponse;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * In-heap message cache in front of Redis, or on its own when Redis is not configured.
+ * Backed by Caffeine (W-TinyLFU admission, lock-free reads). Caffeine bounds a cache by either
+ * entry count or weight, so each entry weighs at least maxBytes / maxEntries: the weight bound then
+ * caps the estimated size at maxBytes and the number of entries at maxEntries.
+ * Entries expire after the TTL for their status. Other instances' status changes arrive as invalidation
+ * broadcasts (see CacheInvalidationConsumer).
+ */
+public class NearMessageCache implements MessageCache {
+
+    /** Rough fixed footprint of a MessageResponse with its UUID, timestamps and string headers */
+    private static final int BASE_ENTRY_BYTES = 320;
+
+    private final Cache<UUID, MessageResponse> cache;
+
+    public NearMessageCache(long maxEntries, long maxBytes, Function<MessageResponse, Duration> ttl) {
+        long minWeight = maxEntries > 0 ? Math.max(1, maxBytes / maxEntries) : Long.MAX_VALUE;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxEntries > 0 ? maxBytes : 0)
+                .weigher((UUID id, MessageResponse message) ->
+                        (int) Math.min(Integer.MAX_VALUE, Math.max(minWeight, estimateBytes(message))))
+                .expireAfter(new Expiry<UUID, MessageResponse>() {
+                    @Override
+                    public long expireAfterCreate(UUID id, MessageResponse message, long currentTime) {
+                        return ttl.apply(message).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID id, MessageResponse message, long currentTime,
+                                                  long currentDuration) {
+                        return ttl.apply(message).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID id, MessageResponse message, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Optional<MessageResponse> get(UUID messageId) {
+        return Optional.ofNullable(cache.getIfPresent(messageId));
+    }
+
+    @Override
+    public void put(MessageResponse message) {
+        cache.put(message.getId(), message);
+    }
+
+    @Override
+    public void evict(Collection<UUID> messageIds) {
+        cache.invalidateAll(messageIds);
+    }
+
+    @Override
+    public String backend() {
+        return "near";
+    }
+
+    /**
+     * Underlying Caffeine cache, for metrics
+     */
+    public Cache<UUID, MessageResponse> cache() {
+        return cache;
+    }
+
+    /**
+     * Estimated heap footprint of a cached response
+     */
+    public static long estimateBytes(MessageResponse message) {
+        return BASE_ENTRY_BYTES
+                + length(message.getSender())
+                + length(message.getRecipient())
+                + length(message.getText())
+                + length(message.getFailureReason());
+    }
+
+    private static long length(String value) {
+        // Compact strings store Latin-1 text in one byte per char; assume two to stay on the safe side
+        return value != null ? 2L * value.length() : 0;
+    }
+}
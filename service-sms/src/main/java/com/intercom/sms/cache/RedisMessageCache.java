@@ -0,0 +1,94 @@
+package com.intercom.sms.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.sms.api.dto.MessageResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.keys.KeyCommands;
+import io.quarkus.redis.datasource.value.ValueCommands;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Message cache shared by all SMS service instances, stored in Redis as JSON under sms:message:{id}
+ * with a per-entry expiry
+ */
+public class RedisMessageCache implements MessageCache {
+
+    private static final Logger LOG = Logger.getLogger(RedisMessageCache.class);
+
+    private static final String KEY_PREFIX = "sms:message:";
+
+    private final ValueCommands<String, String> values;
+    private final KeyCommands<String> keys;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Function<MessageResponse, Duration> ttl;
+
+    public RedisMessageCache(RedisDataSource redis, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                             Function<MessageResponse, Duration> ttl) {
+        this.values = redis.value(String.class, String.class);
+        this.keys = redis.key(String.class);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public Optional<MessageResponse> get(UUID messageId) {
+        try {
+            String json = values.get(key(messageId));
+            if (json == null) {
+                return Optional.empty();
+            }
+            return Optional.of(objectMapper.readValue(json, MessageResponse.class));
+        } catch (Exception e) {
+            failed("read", messageId, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void put(MessageResponse message) {
+        try {
+            values.psetex(key(message.getId()), ttl.apply(message).toMillis(), objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            failed("write", message.getId(), e);
+        }
+    }
+
+    @Override
+    public void evict(Collection<UUID> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        try {
+            keys.del(messageIds.stream().map(RedisMessageCache::key).toArray(String[]::new));
+        } catch (Exception e) {
+            // Entries that could not be evicted expire on their own after their TTL
+            LOG.warnf(e, "Failed to evict %d messages from Redis cache", messageIds.size());
+            meterRegistry.counter("sms_message_cache_errors_total", "backend", backend(), "operation", "evict")
+                    .increment();
+        }
+    }
+
+    @Override
+    public String backend() {
+        return "redis";
+    }
+
+    private void failed(String operation, UUID messageId, Exception e) {
+        LOG.warnf(e, "Redis cache %s failed for message %s", operation, messageId);
+        meterRegistry.counter("sms_message_cache_errors_total", "backend", backend(), "operation", operation)
+                .increment();
+    }
+
+    private static String key(UUID messageId) {
+        return KEY_PREFIX + messageId;
+    }
+}
@@ -0,0 +1,50 @@
+package com.intercom.sms.cache;
+
+import com.intercom.sms.api.dto.MessageResponse;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Near cache in front of a shared remote cache. Reads try the near cache first and copy remote hits
+ * into it; writes and evictions go to both.
+ */
+public class TieredMessageCache implements MessageCache {
+
+    private final MessageCache near;
+    private final MessageCache remote;
+
+    public TieredMessageCache(MessageCache near, MessageCache remote) {
+        this.near = near;
+        this.remote = remote;
+    }
+
+    @Override
+    public Optional<MessageResponse> get(UUID messageId) {
+        Optional<MessageResponse> cached = near.get(messageId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        cached = remote.get(messageId);
+        cached.ifPresent(near::put);
+        return cached;
+    }
+
+    @Override
+    public void put(MessageResponse message) {
+        near.put(message);
+        remote.put(message);
+    }
+
+    @Override
+    public void evict(Collection<UUID> messageIds) {
+        near.evict(messageIds);
+        remote.evict(messageIds);
+    }
+
+    @Override
+    public String backend() {
+        return near.backend() + "+" + remote.backend();
+    }
+}
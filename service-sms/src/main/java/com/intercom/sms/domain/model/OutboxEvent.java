@@ -0,0 +1,119 @@
+package com.intercom.sms.domain.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Outbox entry for an SMS request that still has to be published to Kafka.
+ * Written in the same transaction as its {@link Message} and removed by the outbox relay
+ * once the broker has acknowledged the record.
+ */
+@Entity
+@Table(name = "sms_request_outbox")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sms_request_outbox_seq")
+    @SequenceGenerator(name = "sms_request_outbox_seq", sequenceName = "sms_request_outbox_seq", allocationSize = 50)
+    @Column(name = "id", updatable = false, nullable = false)
+    private Long id;
+
+    @Column(name = "message_id", updatable = false, nullable = false)
+    private UUID messageId;
+
+    @Column(name = "recipient", updatable = false, length = 20)
+    private String recipient;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Set by the database (defaults to CURRENT_TIMESTAMP), so it is always on the clock the relay polls with
+    @Column(name = "next_attempt_at", nullable = false, insertable = false, updatable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Constructors
+    public OutboxEvent() {
+    }
+
+    public OutboxEvent(UUID messageId, String recipient) {
+        this.messageId = messageId;
+        this.recipient = recipient;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Business methods
+    public void recordFailure(String error) {
+        this.attempts++;
+        this.lastError = error != null && error.length() > 500 ? error.substring(0, 500) : error;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(UUID messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(String recipient) {
+        this.recipient = recipient;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEvent{" +
+                "id=" + id +
+                ", messageId=" + messageId +
+                ", attempts=" + attempts +
+                '}';
+    }
+}
@@ -0,0 +1,21 @@
+package com.intercom.sms.domain.model;
+
+/**
+ * Outcome of a conditional status update from a delivery report
+ */
+public enum StatusUpdateResult {
+    /**
+     * The message was PENDING and now carries the reported status
+     */
+    APPLIED,
+    
+    /**
+     * No message exists with the given ID
+     */
+    NOT_FOUND,
+    
+    /**
+     * The message had already reached SENT or FAILED and was left unchanged
+     */
+    ALREADY_FINAL
+}
@@ -0,0 +1,69 @@
+package com.intercom.sms.domain.repository;
+
+import com.intercom.sms.domain.model.ArchivedMessage;
+import com.intercom.sms.domain.model.MessageStatus;
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Repository for archived messages
+ */
+@ApplicationScoped
+public class ArchivedMessageRepository implements PanacheRepositoryBase<ArchivedMessage, UUID> {
+
+    /**
+     * Move the oldest messages created before the cutoff and in a final status into the archive,
+     * as one statement: the rows are deleted from messages and inserted into messages_archive together.
+     * SKIP LOCKED keeps the archiver off rows another transaction is updating, and lets several
+     * instances archive at once. Must be called inside a transaction.
+     *
+     * @return the number of messages archived
+     */
+    public int archiveChunk(LocalDateTime createdBefore, int limit) {
+        return getEntityManager()
+                .createNativeQuery(
+                        "WITH chunk AS (" +
+                        "  SELECT id, created_at FROM messages " +
+                        "  WHERE created_at < :createdBefore AND status IN ('SENT', 'FAILED') " +
+                        "  ORDER BY created_at " +
+                        "  LIMIT :limit " +
+                        "  FOR UPDATE SKIP LOCKED" +
+                        "), moved AS (" +
+                        "  DELETE FROM messages m USING chunk c " +
+                        "  WHERE m.id = c.id AND m.created_at = c.created_at " +
+                        "  RETURNING m.*" +
+                        ") " +
+                        "INSERT INTO messages_archive " +
+                        "(id, sender, recipient, text, status, failure_reason, created_at, updated_at) " +
+                        "SELECT id, sender, recipient, text, status, failure_reason, created_at, updated_at " +
+                        "FROM moved")
+                .setParameter("createdBefore", createdBefore)
+                .setParameter("limit", limit)
+                .executeUpdate();
+    }
+
+    /**
+     * Count archived messages per status from the trigger-maintained archive counters
+     */
+    @SuppressWarnings("unchecked")
+    public Map<MessageStatus, Long> countAllByStatus() {
+        List<Object[]> rows = getEntityManager()
+                .createNativeQuery("SELECT status, count FROM message_archive_counters")
+                .getResultList();
+        
+        Map<MessageStatus, Long> counts = new EnumMap<>(MessageStatus.class);
+        for (MessageStatus status : MessageStatus.values()) {
+            counts.put(status, 0L);
+        }
+        for (Object[] row : rows) {
+            counts.put(MessageStatus.valueOf((String) row[0]), ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,113 @@
+package com.intercom.sms.domain.repository;
+
+import jakarta.persistence.Query;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * created_at range added to lookups by id, so the planner only visits the monthly partitions
+ * of messages that can hold the row (see V5__Partition_messages_by_month.sql).
+ * Time-ordered (version 7) UUIDs carry their creation time, which gives an exact range; other ids
+ * are looked up in a recent window first and without bounds when that misses.
+ */
+public final class CreatedAtBounds {
+
+    /**
+     * Margin around a UUIDv7 timestamp, covering clock skew and the time zone of created_at
+     */
+    static final Duration UUID_SLACK = Duration.ofDays(1);
+
+    private static final CreatedAtBounds NONE = new CreatedAtBounds(null, null);
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+
+    private CreatedAtBounds(LocalDateTime from, LocalDateTime to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * No bounds: every partition is searched
+     */
+    public static CreatedAtBounds none() {
+        return NONE;
+    }
+
+    /**
+     * Messages created in the last lookback
+     */
+    public static CreatedAtBounds recent(Duration lookback) {
+        LocalDateTime now = LocalDateTime.now();
+        return new CreatedAtBounds(now.minus(lookback), now.plus(UUID_SLACK));
+    }
+
+    /**
+     * Exact range for a UUIDv7 id, empty for ids without a timestamp
+     */
+    public static Optional<CreatedAtBounds> forId(UUID id) {
+        if (!isTimeOrdered(id)) {
+            return Optional.empty();
+        }
+        LocalDateTime created = createdAt(id);
+        return Optional.of(new CreatedAtBounds(created.minus(UUID_SLACK), created.plus(UUID_SLACK)));
+    }
+
+    /**
+     * Range covering every id, empty unless they are all UUIDv7
+     */
+    public static Optional<CreatedAtBounds> forIds(Collection<UUID> ids) {
+        LocalDateTime min = null;
+        LocalDateTime max = null;
+        for (UUID id : ids) {
+            if (!isTimeOrdered(id)) {
+                return Optional.empty();
+            }
+            LocalDateTime created = createdAt(id);
+            min = min == null || created.isBefore(min) ? created : min;
+            max = max == null || created.isAfter(max) ? created : max;
+        }
+        if (min == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new CreatedAtBounds(min.minus(UUID_SLACK), max.plus(UUID_SLACK)));
+    }
+
+    public boolean isBounded() {
+        return from != null;
+    }
+
+    /**
+     * Predicate to append to a WHERE clause, binding :createdFrom and :createdTo; empty when unbounded
+     *
+     * @param column created_at column as named in the query (SQL or HQL)
+     */
+    public String and(String column) {
+        return isBounded() ? " AND " + column + " >= :createdFrom AND " + column + " < :createdTo" : "";
+    }
+
+    /**
+     * Bind the parameters used by {@link #and(String)}
+     */
+    public <Q extends Query> Q bind(Q query) {
+        if (isBounded()) {
+            query.setParameter("createdFrom", from).setParameter("createdTo", to);
+        }
+        return query;
+    }
+
+    private static boolean isTimeOrdered(UUID id) {
+        return id.variant() == 2 && id.version() == 7;
+    }
+
+    private static LocalDateTime createdAt(UUID id) {
+        long epochMillis = id.getMostSignificantBits() >>> 16;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
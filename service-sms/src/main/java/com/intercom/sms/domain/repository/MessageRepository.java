@@ -2,38 +2,93 @@ package com.intercom.sms.domain.repository;
 
 import com.intercom.sms.domain.model.Message;
 import com.intercom.sms.domain.model.MessageStatus;
+import com.intercom.sms.domain.model.StatusUpdateResult;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import io.quarkus.panache.common.Page;
 import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.Query;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
- * Repository for Message entities using Panache
+ * Repository for Message entities using Panache.
+ * messages is partitioned by month of created_at, so lookups by id carry created_at bounds
+ * (see {@link CreatedAtBounds}) and other queries bound created_at wherever the result allows it.
  */
 @ApplicationScoped
 public class MessageRepository implements PanacheRepository<Message> {
 
+    @ConfigProperty(name = "sms.messages.id-lookup-lookback", defaultValue = "7d")
+    Duration idLookupLookback;
+
     /**
      * Find message by ID
      */
     public Optional<Message> findByIdOptional(UUID id) {
-        return find("id", id).firstResultOptional();
+        Optional<CreatedAtBounds> exact = CreatedAtBounds.forId(id);
+        Optional<Message> message = findById(id, exact.orElseGet(this::recent));
+        if (message.isEmpty() && exact.isEmpty()) {
+            message = findById(id, CreatedAtBounds.none());
+        }
+        return message;
+    }
+
+    private Optional<Message> findById(UUID id, CreatedAtBounds bounds) {
+        return bounds.bind(getEntityManager()
+                        .createQuery("FROM Message WHERE id = :id" + bounds.and("createdAt"), Message.class)
+                        .setParameter("id", id))
+                .getResultStream()
+                .findFirst();
+    }
+
+    /**
+     * Find messages by ID; IDs that do not exist are left out
+     */
+    public List<Message> findByIds(Collection<UUID> ids) {
+        Optional<CreatedAtBounds> exact = CreatedAtBounds.forIds(ids);
+        List<Message> messages = findByIds(ids, exact.orElseGet(this::recent));
+        if (messages.size() < ids.size() && exact.isEmpty()) {
+            Set<UUID> found = messages.stream().map(Message::getId).collect(Collectors.toSet());
+            List<UUID> missing = ids.stream().filter(id -> !found.contains(id)).collect(Collectors.toList());
+            messages = new ArrayList<>(messages);
+            messages.addAll(findByIds(missing, CreatedAtBounds.none()));
+        }
+        return messages;
+    }
+
+    private List<Message> findByIds(Collection<UUID> ids, CreatedAtBounds bounds) {
+        return bounds.bind(getEntityManager()
+                        .createQuery("FROM Message WHERE id IN :ids" + bounds.and("createdAt"), Message.class)
+                        .setParameter("ids", ids))
+                .getResultList();
+    }
+
+    /**
+     * Window searched first for ids without a timestamp; recent messages are the ones still being
+     * polled and updated
+     */
+    private CreatedAtBounds recent() {
+        return CreatedAtBounds.recent(idLookupLookback);
     }
 
     /**
      * Find all messages for a specific user (sender or recipient)
      */
     public List<Message> findByUser(String phoneNumber, Page page) {
-        return find("sender = ?1 or recipient = ?1", 
-                   Sort.by("createdAt").descending(), 
-                   phoneNumber)
-                .page(page)
-                .list();
+        return findUserPage(phoneNumber, null, null, null, page.index * page.size, page.size);
     }
 
     /**
@@ -67,11 +122,37 @@ public class MessageRepository implements PanacheRepository<Message> {
      * Find messages by status and user
      */
     public List<Message> findByStatusAndUser(MessageStatus status, String phoneNumber, Page page) {
-        return find("status = ?1 and (sender = ?2 or recipient = ?2)", 
-                   Sort.by("createdAt").descending(), 
-                   status, phoneNumber)
-                .page(page)
-                .list();
+        return findUserPage(phoneNumber, status, null, null, page.index * page.size, page.size);
+    }
+
+    /**
+     * Keyset page of a user's messages (sender or recipient), newest first.
+     * Starts after (createdAt, id) of the previous page's last row, or from the newest when they are null.
+     */
+    public List<Message> findByUserAfter(String phoneNumber, MessageStatus status,
+                                         LocalDateTime createdAt, UUID id, int limit) {
+        return findUserPage(phoneNumber, status, createdAt, id, 0, limit);
+    }
+
+    /**
+     * Run the sender/recipient UNION ALL page query (see {@link UserMessageQueries})
+     */
+    @SuppressWarnings("unchecked")
+    private List<Message> findUserPage(String phoneNumber, MessageStatus status,
+                                       LocalDateTime createdAt, UUID id, int offset, int limit) {
+        Query query = getEntityManager()
+                .createNativeQuery(UserMessageQueries.page(status != null, createdAt != null), Message.class)
+                .setParameter("user", phoneNumber)
+                .setParameter("branchLimit", offset + limit)
+                .setParameter("limit", limit)
+                .setParameter("offset", offset);
+        if (status != null) {
+            query.setParameter("status", status.name());
+        }
+        if (createdAt != null) {
+            query.setParameter("createdAt", createdAt).setParameter("id", id);
+        }
+        return query.getResultList();
     }
 
     /**
@@ -89,7 +170,24 @@ public class MessageRepository implements PanacheRepository<Message> {
      * Count messages for a user
      */
     public long countByUser(String phoneNumber) {
-        return count("sender = ?1 or recipient = ?1", phoneNumber);
+        return countUserMessages(phoneNumber, null);
+    }
+
+    /**
+     * Count messages with a given status for a user
+     */
+    public long countByStatusAndUser(MessageStatus status, String phoneNumber) {
+        return countUserMessages(phoneNumber, status);
+    }
+
+    private long countUserMessages(String phoneNumber, MessageStatus status) {
+        Query query = getEntityManager()
+                .createNativeQuery(UserMessageQueries.count(status != null))
+                .setParameter("user", phoneNumber);
+        if (status != null) {
+            query.setParameter("status", status.name());
+        }
+        return ((Number) query.getSingleResult()).longValue();
     }
 
     /**
@@ -99,6 +197,70 @@ public class MessageRepository implements PanacheRepository<Message> {
         return count("status", status);
     }
 
+    /**
+     * Count messages per status from the trigger-maintained counters table.
+     * Reads 48 small rows instead of scanning messages.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<MessageStatus, Long> countAllByStatus() {
+        List<Object[]> rows = getEntityManager()
+                .createNativeQuery("SELECT status, SUM(count) FROM message_status_counters GROUP BY status")
+                .getResultList();
+        
+        Map<MessageStatus, Long> counts = new EnumMap<>(MessageStatus.class);
+        for (MessageStatus status : MessageStatus.values()) {
+            counts.put(status, 0L);
+        }
+        for (Object[] row : rows) {
+            counts.put(MessageStatus.valueOf((String) row[0]), ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Correct any drift between the maintained counters and the real per-status counts.
+     * Runs as one statement, so the real counts and the counter sums come from the same snapshot;
+     * the correction is applied to stripe 0.
+     *
+     * @return the drift found per status (real minus maintained), only for statuses that drifted
+     */
+    @SuppressWarnings("unchecked")
+    public Map<MessageStatus, Long> reconcileStatusCounters() {
+        List<Object[]> rows = getEntityManager()
+                .createNativeQuery(
+                        "WITH actual AS (" +
+                        "  SELECT status, COUNT(*) AS count FROM messages GROUP BY status" +
+                        "), maintained AS (" +
+                        "  SELECT status, SUM(count) AS count FROM message_status_counters GROUP BY status" +
+                        ") " +
+                        "UPDATE message_status_counters c " +
+                        "SET count = c.count + (COALESCE(a.count, 0) - m.count) " +
+                        "FROM maintained m LEFT JOIN actual a ON a.status = m.status " +
+                        "WHERE c.status = m.status AND c.stripe = 0 AND COALESCE(a.count, 0) <> m.count " +
+                        "RETURNING c.status, COALESCE(a.count, 0) - m.count")
+                .getResultList();
+        
+        Map<MessageStatus, Long> drift = new EnumMap<>(MessageStatus.class);
+        for (Object[] row : rows) {
+            drift.put(MessageStatus.valueOf((String) row[0]), ((Number) row[1]).longValue());
+        }
+        return drift;
+    }
+
+    /**
+     * Create any missing monthly partitions of messages from the current month through monthsAhead months later
+     *
+     * @return the number of partitions created
+     */
+    public int createMonthlyPartitions(int monthsAhead) {
+        Object created = getEntityManager()
+                .createNativeQuery("SELECT create_message_partitions(CURRENT_DATE, " +
+                                   "CAST(CURRENT_DATE + make_interval(months => :ahead) AS DATE))")
+                .setParameter("ahead", monthsAhead)
+                .getSingleResult();
+        return ((Number) created).intValue();
+    }
+
     /**
      * Find pending messages (for potential retry scenarios)
      */
@@ -112,24 +274,118 @@ public class MessageRepository implements PanacheRepository<Message> {
      * Find failed messages for analysis
      */
     public List<Message> findFailedMessages(Page page) {
-        return find("status", Sort.by("updatedAt").descending(), MessageStatus.FAILED)
+        return find("status", Sort.by("updatedAt").descending().and("id", Sort.Direction.Descending), 
+                   MessageStatus.FAILED)
                 .page(page)
                 .list();
     }
 
     /**
-     * Update message status
+     * Keyset page of failed messages, most recently failed first.
+     * Starts after (updatedAt, id) of the previous page's last row, or from the newest when they are null.
+     */
+    public List<Message> findFailedMessagesAfter(LocalDateTime updatedAt, UUID id, int limit) {
+        if (updatedAt == null) {
+            return find("status", Sort.by("updatedAt").descending().and("id", Sort.Direction.Descending), 
+                       MessageStatus.FAILED)
+                    .range(0, limit - 1)
+                    .list();
+        }
+        // updated_at is never before created_at, so createdAt <= ?2 skips later partitions
+        return find("status = ?1 and (updatedAt, id) < (?2, ?3) and createdAt <= ?2", 
+                   Sort.by("updatedAt").descending().and("id", Sort.Direction.Descending), 
+                   MessageStatus.FAILED, updatedAt, id)
+                .range(0, limit - 1)
+                .list();
+    }
+
+    /**
+     * Move a PENDING message to a final status in a single statement, without loading the entity.
+     * The WHERE guard keeps a late or duplicate report from overwriting a status that is already final.
+     */
+    public StatusUpdateResult updateStatusIfPending(UUID messageId, MessageStatus status, String failureReason) {
+        Optional<CreatedAtBounds> exact = CreatedAtBounds.forId(messageId);
+        StatusUpdateResult result = updateStatusIfPending(messageId, status, failureReason,
+                exact.orElseGet(this::recent));
+        if (result == StatusUpdateResult.NOT_FOUND && exact.isEmpty()) {
+            result = updateStatusIfPending(messageId, status, failureReason, CreatedAtBounds.none());
+        }
+        return result;
+    }
+
+    private StatusUpdateResult updateStatusIfPending(UUID messageId, MessageStatus status, String failureReason,
+                                                     CreatedAtBounds bounds) {
+        Object result = bounds.bind(getEntityManager()
+                .createNativeQuery(
+                        "WITH updated AS (" +
+                        "  UPDATE messages SET status = :status, failure_reason = :reason, " +
+                        "  updated_at = CURRENT_TIMESTAMP " +
+                        "  WHERE id = :id AND status = 'PENDING'" + bounds.and("created_at") +
+                        "  RETURNING id) " +
+                        "SELECT CASE " +
+                        "  WHEN EXISTS (SELECT 1 FROM updated) THEN 'APPLIED' " +
+                        "  WHEN EXISTS (SELECT 1 FROM messages WHERE id = :id" + bounds.and("created_at") + ") " +
+                        "  THEN 'ALREADY_FINAL' " +
+                        "  ELSE 'NOT_FOUND' END")
+                .setParameter("status", status.name())
+                .setParameter("reason", failureReason)
+                .setParameter("id", messageId))
+                .getSingleResult();
+        return StatusUpdateResult.valueOf(result.toString());
+    }
+
+    /**
+     * Set-based variant of {@link #updateStatusIfPending(UUID, MessageStatus, String)} for a group of
+     * messages sharing the same status and failure reason
+     *
+     * @return the outcome for every requested ID
      */
-    public void updateStatus(UUID messageId, MessageStatus status, String failureReason) {
-        update("status = ?1, failureReason = ?2, updatedAt = current_timestamp where id = ?3", 
-               status, failureReason, messageId);
+    public Map<UUID, StatusUpdateResult> updateStatusIfPending(Collection<UUID> messageIds, MessageStatus status,
+                                                               String failureReason) {
+        Optional<CreatedAtBounds> exact = CreatedAtBounds.forIds(messageIds);
+        Map<UUID, StatusUpdateResult> results = new HashMap<>();
+        for (UUID messageId : messageIds) {
+            results.put(messageId, StatusUpdateResult.NOT_FOUND);
+        }
+        results.putAll(updateStatusIfPending(messageIds, status, failureReason, exact.orElseGet(this::recent)));
+        
+        if (exact.isEmpty()) {
+            List<UUID> missing = messageIds.stream()
+                    .filter(id -> results.get(id) == StatusUpdateResult.NOT_FOUND)
+                    .collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                results.putAll(updateStatusIfPending(missing, status, failureReason, CreatedAtBounds.none()));
+            }
+        }
+        return results;
     }
 
     /**
-     * Bulk update status for multiple messages
+     * @return the outcome for every ID that was found
      */
-    public void updateStatusBulk(List<UUID> messageIds, MessageStatus status) {
-        update("status = ?1, updatedAt = current_timestamp where id in ?2", 
-               status, messageIds);
+    @SuppressWarnings("unchecked")
+    private Map<UUID, StatusUpdateResult> updateStatusIfPending(Collection<UUID> messageIds, MessageStatus status,
+                                                                String failureReason, CreatedAtBounds bounds) {
+        List<Object[]> rows = bounds.bind(getEntityManager()
+                .createNativeQuery(
+                        "WITH updated AS (" +
+                        "  UPDATE messages SET status = :status, failure_reason = :reason, " +
+                        "  updated_at = CURRENT_TIMESTAMP " +
+                        "  WHERE id IN (:ids) AND status = 'PENDING'" + bounds.and("created_at") +
+                        "  RETURNING id) " +
+                        "SELECT m.id, u.id IS NOT NULL " +
+                        "FROM messages m LEFT JOIN updated u ON u.id = m.id " +
+                        "WHERE m.id IN (:ids)" + bounds.and("m.created_at"))
+                .setParameter("status", status.name())
+                .setParameter("reason", failureReason)
+                .setParameter("ids", messageIds))
+                .getResultList();
+        
+        Map<UUID, StatusUpdateResult> results = new HashMap<>();
+        for (Object[] row : rows) {
+            results.put((UUID) row[0], Boolean.TRUE.equals(row[1])
+                    ? StatusUpdateResult.APPLIED : StatusUpdateResult.ALREADY_FINAL);
+        }
+        return results;
     }
 }
@@ -0,0 +1,77 @@
+package com.intercom.sms.domain.repository;
+
+import com.intercom.sms.domain.model.OutboxEvent;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.List;
+
+/**
+ * Repository for SMS request outbox entries
+ */
+@ApplicationScoped
+public class OutboxRepository implements PanacheRepository<OutboxEvent> {
+
+    /**
+     * Lock the next batch of due outbox entries in id order.
+     * SKIP LOCKED lets several sms-service instances drain the outbox concurrently
+     * without waiting on each other's rows. An entry is held back while an earlier entry for the
+     * same recipient is not due, because it waits for a retry or is leased by a relay, so that a
+     * recipient's messages are published in order. Must be called inside a transaction.
+     */
+    @SuppressWarnings("unchecked")
+    public List<OutboxEvent> lockNextBatch(int limit) {
+        return getEntityManager()
+                .createNativeQuery(
+                        "SELECT * FROM sms_request_outbox o " +
+                        "WHERE o.next_attempt_at <= CURRENT_TIMESTAMP " +
+                        "AND NOT EXISTS (SELECT 1 FROM sms_request_outbox earlier " +
+                        "WHERE earlier.recipient = o.recipient AND earlier.id < o.id " +
+                        "AND earlier.next_attempt_at > CURRENT_TIMESTAMP) " +
+                        "ORDER BY o.id " +
+                        "LIMIT :limit " +
+                        "FOR UPDATE OF o SKIP LOCKED", OutboxEvent.class)
+                .setParameter("limit", limit)
+                .getResultList();
+    }
+
+    /**
+     * Hide entries from other relays for the given time. The deadline is taken from the database
+     * clock, which lockNextBatch compares it with.
+     */
+    public int lease(List<Long> ids, long leaseMillis) {
+        return getEntityManager()
+                .createNativeQuery(
+                        "UPDATE sms_request_outbox " +
+                        "SET next_attempt_at = CURRENT_TIMESTAMP + make_interval(secs => :secs) " +
+                        "WHERE id IN (:ids)")
+                .setParameter("secs", leaseMillis / 1000.0)
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    /**
+     * Store the attempt count and error of a detached entry after a failed publish, and make it due
+     * again after the backoff by the database clock
+     */
+    public int reschedule(OutboxEvent event, long backoffMillis) {
+        return getEntityManager()
+                .createNativeQuery(
+                        "UPDATE sms_request_outbox " +
+                        "SET attempts = :attempts, last_error = :lastError, " +
+                        "next_attempt_at = CURRENT_TIMESTAMP + make_interval(secs => :secs) " +
+                        "WHERE id = :id")
+                .setParameter("attempts", event.getAttempts())
+                .setParameter("lastError", event.getLastError())
+                .setParameter("secs", backoffMillis / 1000.0)
+                .setParameter("id", event.getId())
+                .executeUpdate();
+    }
+
+    /**
+     * Delete published outbox entries
+     */
+    public long deleteByIds(List<Long> ids) {
+        return delete("id in ?1", ids);
+    }
+}
@@ -0,0 +1,40 @@
+package com.intercom.sms.domain.repository;
+
+import com.intercom.sms.domain.model.Message;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Message inserts on the reactive PostgreSQL pool, for the non-blocking send path.
+ * A message and its outbox entry are written by one statement, so they commit together
+ * in a single round trip without an explicit transaction.
+ */
+@ApplicationScoped
+public class ReactiveMessageRepository {
+
+    /**
+     * Outbox ids are taken straight from the sequence; each one uses up a whole block of the
+     * sequence increment, which Hibernate's pooled optimizer never hands out, so ids stay unique
+     */
+    static final String INSERT_WITH_OUTBOX = "WITH inserted AS ("
+            + "INSERT INTO messages (id, sender, recipient, text, status, created_at, updated_at) "
+            + "VALUES ($1, $2, $3, $4, $5, $6, $6) RETURNING id) "
+            + "INSERT INTO sms_request_outbox (id, message_id, recipient, attempts, created_at, next_attempt_at) "
+            + "SELECT nextval('sms_request_outbox_seq'), id, $3, 0, $6, CURRENT_TIMESTAMP FROM inserted";
+
+    @Inject
+    Pool pool;
+
+    /**
+     * Insert a new message, with its id and timestamps already set, together with its outbox entry
+     */
+    public Uni<Void> persistWithOutbox(Message message) {
+        return pool.preparedQuery(INSERT_WITH_OUTBOX)
+                .execute(Tuple.of(message.getId(), message.getSender(), message.getRecipient(),
+                        message.getText(), message.getStatus().name(), message.getCreatedAt()))
+                .replaceWithVoid();
+    }
+}
@@ -0,0 +1,50 @@
+package com.intercom.sms.domain.repository;
+
+/**
+ * Native SQL for "messages sent or received by a user".
+ * A single {@code sender = :user OR recipient = :user} predicate cannot be answered in order by either
+ * of the (sender|recipient, created_at DESC, id DESC) indexes, so the planner falls back to a bitmap OR
+ * and sorts every matching row. These queries instead run one index-ordered scan per column, each
+ * limited to the rows the page can need, and merge the two short results. The recipient branch skips
+ * rows where the user is also the sender, so self-addressed messages are returned once.
+ * Keyset pages repeat the cursor bound as a plain created_at comparison, which the planner can use
+ * to skip newer partitions; it cannot prune on the row comparison.
+ *
+ * <p>Parameters: {@code :user}, plus {@code :status} when filtering by status, {@code :createdAt} and
+ * {@code :id} when reading after a keyset cursor, and {@code :branchLimit}, {@code :limit},
+ * {@code :offset} for the page.
+ */
+public final class UserMessageQueries {
+
+    private UserMessageQueries() {
+    }
+
+    /**
+     * Page of a user's messages, newest first
+     *
+     * @param byStatus whether to filter on {@code :status}
+     * @param keyset   whether to start after ({@code :createdAt}, {@code :id})
+     */
+    public static String page(boolean byStatus, boolean keyset) {
+        String filter = (byStatus ? " AND status = :status" : "")
+                + (keyset ? " AND (created_at, id) < (:createdAt, :id) AND created_at <= :createdAt" : "");
+        return "SELECT * FROM ("
+                + "(SELECT * FROM messages WHERE sender = :user" + filter
+                + " ORDER BY created_at DESC, id DESC LIMIT :branchLimit)"
+                + " UNION ALL "
+                + "(SELECT * FROM messages WHERE recipient = :user AND sender <> :user" + filter
+                + " ORDER BY created_at DESC, id DESC LIMIT :branchLimit)"
+                + ") m ORDER BY created_at DESC, id DESC LIMIT :limit OFFSET :offset";
+    }
+
+    /**
+     * Number of messages a user sent or received
+     *
+     * @param byStatus whether to filter on {@code :status}
+     */
+    public static String count(boolean byStatus) {
+        String filter = byStatus ? " AND status = :status" : "";
+        return "SELECT (SELECT COUNT(*) FROM messages WHERE sender = :user" + filter + ")"
+                + " + (SELECT COUNT(*) FROM messages WHERE recipient = :user AND sender <> :user" + filter + ")";
+    }
+}
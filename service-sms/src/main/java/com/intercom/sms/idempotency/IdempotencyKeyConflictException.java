@@ -0,0 +1,11 @@
+package com.intercom.sms.idempotency;
+
+/**
+ * An Idempotency-Key was reused for a request that differs from the one it was first sent with
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,121 @@
+package com.intercom.sms.idempotency;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bloom filter of idempotency keys used in the last TTL, so a request with a new key (the common case)
+ * is sent without a store lookup. A negative answer is exact; a positive one may be a false positive,
+ * and the store decides.
+ * Keys are added to the current generation; every TTL the current generation becomes the previous one
+ * and the oldest is dropped, so a key is remembered for between one and two TTLs and the false positive
+ * rate does not grow over time.
+ * Until one TTL has passed since start the filter has not seen every live key (other instances may have
+ * stored them before this one started), so it answers "maybe" for everything.
+ */
+public class IdempotencyKeyFilter {
+
+    private final int bits;
+    private final int hashes;
+    private final long generationNanos;
+    private final long startedAt;
+    private final ReentrantLock rotation = new ReentrantLock();
+
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+    private volatile long generationStartedAt;
+
+    public IdempotencyKeyFilter(long expectedKeys, double falsePositiveRate, Duration ttl) {
+        // Optimal sizing for n keys at rate p: m = -n ln p / (ln 2)^2 bits, k = m / n ln 2 hash functions
+        double optimalBits = -Math.max(1, expectedKeys) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, Math.ceil(optimalBits)));
+        this.hashes = Math.max(1, (int) Math.round(optimalBits / Math.max(1, expectedKeys) * Math.log(2)));
+        this.generationNanos = ttl.toNanos();
+        this.startedAt = System.nanoTime();
+        this.current = newGeneration();
+        this.previous = newGeneration();
+        this.generationStartedAt = startedAt;
+    }
+
+    public boolean mightContain(UUID keyId) {
+        rotateIfDue();
+        if (System.nanoTime() - startedAt < generationNanos) {
+            return true;
+        }
+        return contains(current, keyId) || contains(previous, keyId);
+    }
+
+    public void add(UUID keyId) {
+        rotateIfDue();
+        AtomicLongArray words = current;
+        long h1 = keyId.getMostSignificantBits();
+        long h2 = keyId.getLeastSignificantBits();
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(h1, h2, i);
+            long mask = 1L << bit;
+            int word = bit >>> 6;
+            long value = words.get(word);
+            while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                value = words.get(word);
+            }
+        }
+    }
+
+    /**
+     * Number of hash functions, for the startup log
+     */
+    public int hashes() {
+        return hashes;
+    }
+
+    /**
+     * Size of one generation in bytes, for the startup log
+     */
+    public long sizeBytes() {
+        return (bits + 63L) / 64 * Long.BYTES;
+    }
+
+    private boolean contains(AtomicLongArray words, UUID keyId) {
+        long h1 = keyId.getMostSignificantBits();
+        long h2 = keyId.getLeastSignificantBits();
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(h1, h2, i);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * i-th bit position from the two halves of the key hash (Kirsch-Mitzenmacher double hashing)
+     */
+    private int index(long h1, long h2, int i) {
+        return (int) Long.remainderUnsigned(h1 + i * h2, bits);
+    }
+
+    private void rotateIfDue() {
+        if (System.nanoTime() - generationStartedAt < generationNanos) {
+            return;
+        }
+        rotation.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - generationStartedAt < generationNanos) {
+                return;
+            }
+            // After an idle gap longer than two TTLs both generations are stale
+            previous = now - generationStartedAt < 2 * generationNanos ? current : newGeneration();
+            current = newGeneration();
+            generationStartedAt = now;
+        } finally {
+            rotation.unlock();
+        }
+    }
+
+    private AtomicLongArray newGeneration() {
+        return new AtomicLongArray((bits + 63) / 64);
+    }
+}
@@ -0,0 +1,193 @@
+package com.intercom.sms.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.sms.api.dto.MessageResponse;
+import com.intercom.sms.api.dto.SendMessageRequest;
+import com.intercom.sms.messaging.IdempotencyKeyProducer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Makes POST /v1/messages safe to retry with an Idempotency-Key header: the first send with a key
+ * creates the message, later ones within sms.idempotency.ttl get its original response back without
+ * touching the database.
+ * Keys are scoped to the sender and stored as a hash. A request is checked in three steps:
+ * <ol>
+ *   <li>a send with the same key still running on this instance is joined instead of repeated,
+ *       which is what a client retrying on timeout usually hits</li>
+ *   <li>the Bloom filter of recent keys; a new key (the common case) goes straight to the send</li>
+ *   <li>the store (in memory, and Redis when sms.idempotency.redis.enabled is set)</li>
+ * </ol>
+ * With Redis, each new key is broadcast to the other instances' Bloom filters. A retry that reaches
+ * another instance within the broadcast delay (milliseconds) is not recognised.
+ */
+@ApplicationScoped
+public class IdempotencyService {
+
+    private static final Logger LOG = Logger.getLogger(IdempotencyService.class);
+
+    @Inject
+    Instance<RedisDataSource> redisDataSource;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    IdempotencyKeyProducer keyProducer;
+
+    @ConfigProperty(name = "sms.idempotency.redis.enabled", defaultValue = "false")
+    boolean redisEnabled;
+
+    @ConfigProperty(name = "sms.idempotency.ttl", defaultValue = "24h")
+    Duration ttl;
+
+    @ConfigProperty(name = "sms.idempotency.max-keys", defaultValue = "1000000")
+    long maxKeys;
+
+    @ConfigProperty(name = "sms.idempotency.max-size", defaultValue = "128M")
+    MemorySize maxSize;
+
+    @ConfigProperty(name = "sms.idempotency.bloom.false-positive-rate", defaultValue = "0.01")
+    double bloomFalsePositiveRate;
+
+    private final ConcurrentHashMap<UUID, CompletableFuture<MessageResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private IdempotencyKeyFilter filter;
+    private IdempotencyStore store;
+    private Counter newKeys;
+    private Counter storeMisses;
+    private Counter replayed;
+    private Counter joined;
+    private Counter conflicts;
+
+    @PostConstruct
+    void init() {
+        // The Bloom filter and the in-memory store are sized for the same number of keys per TTL
+        filter = new IdempotencyKeyFilter(maxKeys, bloomFalsePositiveRate, ttl);
+        IdempotencyStore local = new InMemoryIdempotencyStore(maxKeys, maxSize.asLongValue(), ttl,
+                meterRegistry.counter("sms_idempotency_evictions_total"));
+        store = redisEnabled
+                ? new TieredIdempotencyStore(local,
+                        new RedisIdempotencyStore(redisDataSource.get(), objectMapper, meterRegistry, ttl))
+                : local;
+        LOG.infof("Idempotency keys kept for %s in %s, up to %d keys and %d MiB in memory; "
+                + "Bloom filter of %d KiB per generation, %d hashes",
+                ttl, store.backend(), maxKeys, maxSize.asLongValue() / (1024 * 1024),
+                filter.sizeBytes() / 1024, filter.hashes());
+
+        newKeys = outcome("new");
+        storeMisses = outcome("store_miss");
+        replayed = outcome("replayed");
+        joined = outcome("joined");
+        conflicts = outcome("conflict");
+    }
+
+    /**
+     * Send a message once per sender and idempotency key.
+     *
+     * @param send creates the message; only called for a key that has not been seen
+     * @throws IdempotencyKeyConflictException if the key was used for a different message
+     */
+    public IdempotentSend send(String idempotencyKey, SendMessageRequest request, Supplier<MessageResponse> send) {
+        UUID keyId = keyId(request.getSender(), idempotencyKey);
+
+        CompletableFuture<MessageResponse> sending = new CompletableFuture<>();
+        CompletableFuture<MessageResponse> running = inFlight.putIfAbsent(keyId, sending);
+        if (running != null) {
+            joined.increment();
+            return replay(request, idempotencyKey, await(running));
+        }
+
+        try {
+            if (filter.mightContain(keyId)) {
+                Optional<MessageResponse> stored = store.get(keyId);
+                if (stored.isPresent()) {
+                    sending.complete(stored.get());
+                    replayed.increment();
+                    return replay(request, idempotencyKey, stored.get());
+                }
+                storeMisses.increment();
+            } else {
+                newKeys.increment();
+            }
+
+            MessageResponse response = send.get();
+            filter.add(keyId);
+            store.put(keyId, response);
+            if (redisEnabled) {
+                keyProducer.broadcast(keyId);
+            }
+            sending.complete(response);
+            return new IdempotentSend(response, false);
+
+        } catch (RuntimeException e) {
+            sending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(keyId, sending);
+        }
+    }
+
+    /**
+     * Add a key stored by another instance to this instance's Bloom filter
+     */
+    public void remember(UUID keyId) {
+        filter.add(keyId);
+    }
+
+    /**
+     * 128-bit hash of the sender and key, so keys of any length take the same space and
+     * two senders can use the same key
+     */
+    static UUID keyId(String sender, String idempotencyKey) {
+        return UUID.nameUUIDFromBytes((sender + '\n' + idempotencyKey).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private IdempotentSend replay(SendMessageRequest request, String idempotencyKey, MessageResponse original) {
+        if (!Objects.equals(request.getRecipient(), original.getRecipient())
+                || !Objects.equals(request.getText(), original.getText())) {
+            conflicts.increment();
+            throw new IdempotencyKeyConflictException(
+                    "Idempotency-Key " + idempotencyKey + " was already used for a different message");
+        }
+        LOG.debugf("Replaying message %s for Idempotency-Key %s", original.getId(), idempotencyKey);
+        return new IdempotentSend(original, true);
+    }
+
+    private static MessageResponse await(CompletableFuture<MessageResponse> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // The first send failed; report its error, the client retries again
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Counter outcome(String outcome) {
+        return meterRegistry.counter("sms_idempotency_requests_total", "outcome", outcome);
+    }
+}
@@ -0,0 +1,28 @@
+package com.intercom.sms.idempotency;
+
+import com.intercom.sms.api.dto.MessageResponse;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Responses of sends made with an Idempotency-Key, keyed by the key's hash (see IdempotencyService).
+ * Implementations never throw: a backend failure is logged and counted, and reads degrade to a miss.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Response stored for a key, or empty if the key is unknown or expired
+     */
+    Optional<MessageResponse> get(UUID keyId);
+
+    /**
+     * Store the response of the first send with a key
+     */
+    void put(UUID keyId, MessageResponse response);
+
+    /**
+     * Backend name used to tag metrics
+     */
+    String backend();
+}
@@ -0,0 +1,10 @@
+package com.intercom.sms.idempotency;
+
+import com.intercom.sms.api.dto.MessageResponse;
+
+/**
+ * Outcome of a send with an Idempotency-Key: the message response, and whether it is the stored
+ * response of an earlier send with the same key rather than a new message
+ */
+public record IdempotentSend(MessageResponse response, boolean replayed) {
+}
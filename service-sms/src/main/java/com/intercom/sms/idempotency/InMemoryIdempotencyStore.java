@@ -0,0 +1,58 @@
+package com.intercom.sms.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.intercom.sms.api.dto.MessageResponse;
+import com.intercom.sms.cache.NearMessageCache;
+import io.micrometer.core.instrument.Counter;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Idempotency store in the heap of this instance; entries expire after the TTL.
+ * Used on its own when Redis is not configured, and in front of Redis otherwise so that retries reaching
+ * the same instance are still recognised while Redis is unavailable.
+ * Entries are weighed by their estimated size like the near message cache, at least maxBytes / maxKeys
+ * each, so the store holds at most maxBytes and at most maxKeys keys. A key evicted to stay within
+ * those bounds is forgotten before its TTL; such evictions are counted.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    /** Key and Caffeine node on top of the response */
+    private static final int KEY_ENTRY_BYTES = 64;
+
+    private final Cache<UUID, MessageResponse> responses;
+
+    public InMemoryIdempotencyStore(long maxKeys, long maxBytes, Duration ttl, Counter evictions) {
+        long minWeight = maxKeys > 0 ? Math.max(1, maxBytes / maxKeys) : Long.MAX_VALUE;
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maxKeys > 0 ? maxBytes : 0)
+                .weigher((UUID keyId, MessageResponse response) -> (int) Math.min(Integer.MAX_VALUE,
+                        Math.max(minWeight, KEY_ENTRY_BYTES + NearMessageCache.estimateBytes(response))))
+                .expireAfterWrite(ttl)
+                .evictionListener((UUID keyId, MessageResponse response, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public Optional<MessageResponse> get(UUID keyId) {
+        return Optional.ofNullable(responses.getIfPresent(keyId));
+    }
+
+    @Override
+    public void put(UUID keyId, MessageResponse response) {
+        responses.put(keyId, response);
+    }
+
+    @Override
+    public String backend() {
+        return "memory";
+    }
+}
@@ -0,0 +1,76 @@
+package com.intercom.sms.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.sms.api.dto.MessageResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.value.SetArgs;
+import io.quarkus.redis.datasource.value.ValueCommands;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Idempotency store shared by all SMS service instances, holding each response as JSON under
+ * sms:idempotency:{key hash} until the TTL expires
+ */
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    private static final Logger LOG = Logger.getLogger(RedisIdempotencyStore.class);
+
+    private static final String KEY_PREFIX = "sms:idempotency:";
+
+    private final ValueCommands<String, String> values;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Duration ttl;
+
+    public RedisIdempotencyStore(RedisDataSource redis, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                 Duration ttl) {
+        this.values = redis.value(String.class, String.class);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public Optional<MessageResponse> get(UUID keyId) {
+        try {
+            String json = values.get(key(keyId));
+            if (json == null) {
+                return Optional.empty();
+            }
+            return Optional.of(objectMapper.readValue(json, MessageResponse.class));
+        } catch (Exception e) {
+            failed("read", keyId, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void put(UUID keyId, MessageResponse response) {
+        try {
+            // NX keeps the first response if two instances raced on the same key
+            values.set(key(keyId), objectMapper.writeValueAsString(response), new SetArgs().nx().px(ttl));
+        } catch (Exception e) {
+            failed("write", keyId, e);
+        }
+    }
+
+    @Override
+    public String backend() {
+        return "redis";
+    }
+
+    private void failed(String operation, UUID keyId, Exception e) {
+        LOG.warnf(e, "Redis idempotency %s failed for key %s", operation, keyId);
+        meterRegistry.counter("sms_idempotency_store_errors_total", "backend", backend(), "operation", operation)
+                .increment();
+    }
+
+    private static String key(UUID keyId) {
+        return KEY_PREFIX + keyId;
+    }
+}
@@ -0,0 +1,43 @@
+package com.intercom.sms.idempotency;
+
+import com.intercom.sms.api.dto.MessageResponse;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * In-memory store in front of a shared remote one. Reads try this instance's memory first and copy
+ * remote hits into it; writes go to both.
+ */
+public class TieredIdempotencyStore implements IdempotencyStore {
+
+    private final IdempotencyStore local;
+    private final IdempotencyStore remote;
+
+    public TieredIdempotencyStore(IdempotencyStore local, IdempotencyStore remote) {
+        this.local = local;
+        this.remote = remote;
+    }
+
+    @Override
+    public Optional<MessageResponse> get(UUID keyId) {
+        Optional<MessageResponse> stored = local.get(keyId);
+        if (stored.isPresent()) {
+            return stored;
+        }
+        stored = remote.get(keyId);
+        stored.ifPresent(response -> local.put(keyId, response));
+        return stored;
+    }
+
+    @Override
+    public void put(UUID keyId, MessageResponse response) {
+        local.put(keyId, response);
+        remote.put(keyId, response);
+    }
+
+    @Override
+    public String backend() {
+        return local.backend() + "+" + remote.backend();
+    }
+}
@@ -0,0 +1,41 @@
+package com.intercom.sms.messaging;
+
+import com.intercom.sms.cache.NearMessageCache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.jboss.logging.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Drops messages changed on any SMS service instance from this instance's near cache.
+ * Each instance consumes sms.cache-invalidations in its own consumer group so it sees every broadcast.
+ * Redis needs no such step: the instance that made the change evicts it there directly.
+ */
+@ApplicationScoped
+public class CacheInvalidationConsumer {
+
+    private static final Logger LOG = Logger.getLogger(CacheInvalidationConsumer.class);
+
+    @Inject
+    NearMessageCache nearMessageCache;
+
+    @Incoming("cache-invalidations-in")
+    public void consume(byte[] payload) {
+        if (payload.length % CacheInvalidationProducer.UUID_SIZE != 0) {
+            LOG.warnf("Dropping malformed cache invalidation of %d bytes", payload.length);
+            return;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        List<UUID> messageIds = new ArrayList<>(payload.length / CacheInvalidationProducer.UUID_SIZE);
+        while (buffer.hasRemaining()) {
+            messageIds.add(new UUID(buffer.getLong(), buffer.getLong()));
+        }
+        nearMessageCache.evict(messageIds);
+    }
+}
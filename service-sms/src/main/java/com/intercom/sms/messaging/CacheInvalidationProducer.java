@@ -0,0 +1,43 @@
+package com.intercom.sms.messaging;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.OnOverflow;
+import org.jboss.logging.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Publishes the IDs of messages whose status changed to sms.cache-invalidations, so every
+ * SMS service instance can drop them from its near cache. Payloads are the raw 16-byte UUIDs
+ * back to back. Best effort: if a broadcast is lost, the entries still expire after their TTL.
+ */
+@ApplicationScoped
+public class CacheInvalidationProducer {
+
+    private static final Logger LOG = Logger.getLogger(CacheInvalidationProducer.class);
+
+    static final int UUID_SIZE = 16;
+
+    @Inject
+    @Channel("cache-invalidations-out")
+    @OnOverflow(value = OnOverflow.Strategy.BUFFER, bufferSize = 10000)
+    Emitter<byte[]> invalidationEmitter;
+
+    public void broadcast(Collection<UUID> messageIds) {
+        ByteBuffer payload = ByteBuffer.allocate(messageIds.size() * UUID_SIZE);
+        for (UUID id : messageIds) {
+            payload.putLong(id.getMostSignificantBits());
+            payload.putLong(id.getLeastSignificantBits());
+        }
+        try {
+            invalidationEmitter.send(payload.array());
+        } catch (Exception e) {
+            LOG.warnf(e, "Failed to broadcast cache invalidation for %d messages", messageIds.size());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.intercom.sms.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.sms.api.dto.DeliveryReportBatchResponse;
+import com.intercom.sms.api.dto.DeliveryReportRequest;
+import com.intercom.sms.service.MessageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.common.annotation.Blocking;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.QueryTimeoutException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.hibernate.exception.JDBCConnectionException;
+import org.jboss.logging.Logger;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Kafka consumer for delivery reports published by the processor.
+ * Records arrive in batches, are validated like the REST batch endpoint's body, and are applied
+ * with the same set-based update. The batch is acknowledged only after this method returns, i.e.
+ * after the database transaction has committed, so offsets never run ahead of the data.
+ */
+@ApplicationScoped
+public class DeliveryReportConsumer {
+
+    private static final Logger LOG = Logger.getLogger(DeliveryReportConsumer.class);
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    Validator validator;
+
+    @ConfigProperty(name = "sms.delivery-reports.consumer.initial-backoff-ms", defaultValue = "500")
+    long initialBackoffMs;
+
+    @ConfigProperty(name = "sms.delivery-reports.consumer.max-backoff-ms", defaultValue = "30000")
+    long maxBackoffMs;
+
+    /**
+     * Apply a batch of delivery reports.
+     * Undecodable or invalid records are counted and skipped. Transient database failures
+     * (connection, timeout, serialization) are retried with backoff until they succeed, holding
+     * the partition (and its offsets) rather than losing reports. If the batch fails for any other
+     * reason, its reports are applied one by one and those that still fail are skipped.
+     */
+    @Incoming("delivery-reports")
+    @Blocking
+    public void consume(List<byte[]> payloads) throws InterruptedException {
+        List<DeliveryReportRequest> reports = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads) {
+            DeliveryReportRequest report = decode(payload);
+            if (report != null) {
+                reports.add(report);
+            }
+        }
+
+        if (reports.isEmpty()) {
+            return;
+        }
+
+        try {
+            apply(reports);
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Failed to apply batch of %d delivery reports, applying them one by one", reports.size());
+            for (DeliveryReportRequest report : reports) {
+                try {
+                    apply(List.of(report));
+                } catch (RuntimeException reportError) {
+                    LOG.errorf(reportError, "Skipping delivery report for message %s that cannot be applied",
+                              report.getMessageId());
+                    meterRegistry.counter("sms_delivery_reports_rejected_total").increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply reports in one transaction, retrying transient failures with backoff
+     *
+     * @throws RuntimeException if the reports failed for a reason retrying will not fix
+     */
+    private void apply(List<DeliveryReportRequest> reports) throws InterruptedException {
+        long backoff = initialBackoffMs;
+        while (true) {
+            try {
+                DeliveryReportBatchResponse response = messageService.processDeliveryReports(reports);
+                meterRegistry.counter("sms_delivery_reports_consumed_total").increment(reports.size());
+                if (!response.getFailedIds().isEmpty()) {
+                    LOG.warnf("Skipping %d delivery reports that could not be applied: %s",
+                             response.getFailedIds().size(), response.getFailedIds());
+                    meterRegistry.counter("sms_delivery_reports_unapplied_total")
+                            .increment(response.getFailedIds().size());
+                }
+                return;
+
+            } catch (RuntimeException e) {
+                meterRegistry.counter("sms_delivery_reports_apply_errors_total").increment();
+                if (!isTransient(e)) {
+                    throw e;
+                }
+                LOG.errorf(e, "Failed to apply %d delivery reports, retrying in %d ms", reports.size(), backoff);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, maxBackoffMs);
+            }
+        }
+    }
+
+    /**
+     * Whether a failure may succeed on retry: the database was unreachable, timed out, or
+     * aborted the transaction because of a conflict. Constraint violations and bad data are not.
+     */
+    static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException
+                    || cause instanceof JDBCConnectionException
+                    || cause instanceof QueryTimeoutException
+                    || cause instanceof LockTimeoutException
+                    || cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException) {
+                String state = sqlException.getSQLState();
+                // No SQL state: the pool could not hand out a connection.
+                // 08 connection exception, 40 transaction rollback, 53 insufficient resources,
+                // 57 operator intervention (includes statement timeout), 55P03 lock not available
+                return state == null || state.startsWith("08") || state.startsWith("40")
+                        || state.startsWith("53") || state.startsWith("57") || state.equals("55P03");
+            }
+        }
+        return false;
+    }
+
+    private DeliveryReportRequest decode(byte[] payload) {
+        DeliveryReportRequest report;
+        try {
+            report = objectMapper.readValue(payload, DeliveryReportRequest.class);
+        } catch (Exception e) {
+            LOG.errorf(e, "Dropping undecodable delivery report of %d bytes", payload.length);
+            meterRegistry.counter("sms_delivery_reports_decode_failed_total").increment();
+            return null;
+        }
+
+        // The same checks as @Valid on the REST endpoints
+        Set<ConstraintViolation<DeliveryReportRequest>> violations = validator.validate(report);
+        if (!violations.isEmpty()) {
+            LOG.errorf("Dropping invalid delivery report for message %s: %s", report.getMessageId(),
+                      violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.joining(", ")));
+            meterRegistry.counter("sms_delivery_reports_invalid_total").increment();
+            return null;
+        }
+        return report;
+    }
+}
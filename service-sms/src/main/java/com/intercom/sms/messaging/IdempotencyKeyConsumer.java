@@ -0,0 +1,34 @@
+package com.intercom.sms.messaging;
+
+import com.intercom.sms.idempotency.IdempotencyService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.jboss.logging.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Adds idempotency keys stored on any SMS service instance to this instance's Bloom filter.
+ * Each instance consumes sms.idempotency-keys in its own consumer group so it sees every broadcast.
+ */
+@ApplicationScoped
+public class IdempotencyKeyConsumer {
+
+    private static final Logger LOG = Logger.getLogger(IdempotencyKeyConsumer.class);
+
+    @Inject
+    IdempotencyService idempotencyService;
+
+    @Incoming("idempotency-keys-in")
+    public void consume(byte[] payload) {
+        if (payload.length != IdempotencyKeyProducer.KEY_ID_SIZE) {
+            LOG.warnf("Dropping malformed idempotency key broadcast of %d bytes", payload.length);
+            return;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        idempotencyService.remember(new UUID(buffer.getLong(), buffer.getLong()));
+    }
+}
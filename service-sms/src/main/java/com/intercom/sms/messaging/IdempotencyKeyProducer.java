@@ -0,0 +1,41 @@
+package com.intercom.sms.messaging;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.OnOverflow;
+import org.jboss.logging.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Publishes the hash of each new idempotency key to sms.idempotency-keys, so every SMS service instance
+ * adds it to its Bloom filter and looks the key up in Redis when a retry reaches it. Payloads are the raw
+ * 16-byte hash. Best effort: if a broadcast is lost, a retry reaching another instance sends the message
+ * again.
+ */
+@ApplicationScoped
+public class IdempotencyKeyProducer {
+
+    private static final Logger LOG = Logger.getLogger(IdempotencyKeyProducer.class);
+
+    static final int KEY_ID_SIZE = 16;
+
+    @Inject
+    @Channel("idempotency-keys-out")
+    @OnOverflow(value = OnOverflow.Strategy.BUFFER, bufferSize = 10000)
+    Emitter<byte[]> keyEmitter;
+
+    public void broadcast(UUID keyId) {
+        ByteBuffer payload = ByteBuffer.allocate(KEY_ID_SIZE);
+        payload.putLong(keyId.getMostSignificantBits());
+        payload.putLong(keyId.getLeastSignificantBits());
+        try {
+            keyEmitter.send(payload.array());
+        } catch (Exception e) {
+            LOG.warnf(e, "Failed to broadcast idempotency key %s", keyId);
+        }
+    }
+}
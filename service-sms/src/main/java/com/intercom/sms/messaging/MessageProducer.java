@@ -1,17 +1,19 @@
 package com.intercom.sms.messaging;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.intercom.sms.domain.model.Message;
+import io.smallrye.reactive.messaging.kafka.KafkaRecord;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.jboss.logging.Logger;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Producer for sending SMS requests to Kafka
@@ -23,35 +25,40 @@ public class MessageProducer {
 
     @Inject
     @Channel("sms-requests")
-    Emitter<String> smsRequestEmitter;
+    Emitter<byte[]> smsRequestEmitter;
 
     @Inject
     ObjectMapper objectMapper;
 
+    @ConfigProperty(name = "sms.requests.wire-format", defaultValue = "JSON")
+    SmsRequestCodec.WireFormat wireFormat;
+
     /**
-     * Send SMS request to Kafka topic for processing
+     * Send SMS request to Kafka topic for processing.
+     * Records are keyed by recipient so every message to the same handset lands on the
+     * same partition and is consumed in order.
+     *
+     * @return a stage completed when the broker has acknowledged the record
      */
-    public void sendSmsRequest(Message message) {
+    public CompletionStage<Void> sendSmsRequest(Message message) {
         try {
-            // Create message payload
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("messageId", message.getId().toString());
-            payload.put("sender", message.getSender());
-            payload.put("recipient", message.getRecipient());
-            payload.put("text", message.getText());
-            payload.put("status", message.getStatus().name());
-            payload.put("createdAt", message.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            
-            // Convert to JSON
-            String jsonPayload = objectMapper.writeValueAsString(payload);
-            
-            LOG.infof("Sending SMS request to Kafka: messageId=%s", message.getId());
-            LOG.debugf("SMS request payload: %s", jsonPayload);
+            byte[] payload = encode(message, null);
             
-            // Send to Kafka
-            smsRequestEmitter.send(jsonPayload);
+            LOG.debugf("Sending SMS request to Kafka: messageId=%s, format=%s, bytes=%d",
+                      message.getId(), wireFormat, payload.length);
             
-            LOG.infof("SMS request sent successfully: messageId=%s", message.getId());
+            // Send to Kafka, completing the returned stage on broker ack or nack
+            CompletableFuture<Void> ack = new CompletableFuture<>();
+            smsRequestEmitter.send(KafkaRecord.of(message.getRecipient(), payload)
+                    .withAck(() -> {
+                        ack.complete(null);
+                        return CompletableFuture.completedFuture(null);
+                    })
+                    .withNack(reason -> {
+                        ack.completeExceptionally(reason);
+                        return CompletableFuture.completedFuture(null);
+                    }));
+            return ack;
             
         } catch (Exception e) {
             LOG.errorf(e, "Failed to send SMS request to Kafka: messageId=%s", message.getId());
@@ -64,21 +71,11 @@ public class MessageProducer {
      */
     public void sendRetryRequest(Message message) {
         try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("messageId", message.getId().toString());
-            payload.put("sender", message.getSender());
-            payload.put("recipient", message.getRecipient());
-            payload.put("text", message.getText());
-            payload.put("status", message.getStatus().name());
-            payload.put("createdAt", message.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            payload.put("isRetry", true);
-            payload.put("retryAt", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            
-            String jsonPayload = objectMapper.writeValueAsString(payload);
+            byte[] payload = encode(message, LocalDateTime.now());
             
             LOG.infof("Sending SMS retry request to Kafka: messageId=%s", message.getId());
             
-            smsRequestEmitter.send(jsonPayload);
+            smsRequestEmitter.send(KafkaRecord.of(message.getRecipient(), payload));
             
             LOG.infof("SMS retry request sent successfully: messageId=%s", message.getId());
             
@@ -87,4 +84,14 @@ public class MessageProducer {
             throw new RuntimeException("Failed to send SMS retry request to message broker", e);
         }
     }
+
+    /**
+     * Encode an SMS request in the configured wire format
+     */
+    private byte[] encode(Message message, LocalDateTime retryAt) throws JsonProcessingException {
+        if (wireFormat == SmsRequestCodec.WireFormat.BINARY) {
+            return SmsRequestCodec.encodeBinary(message, retryAt);
+        }
+        return SmsRequestCodec.encodeJson(objectMapper, message, retryAt);
+    }
 }
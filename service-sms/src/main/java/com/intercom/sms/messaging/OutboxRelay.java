@@ -0,0 +1,258 @@
+package com.intercom.sms.messaging;
+
+import com.intercom.sms.domain.model.Message;
+import com.intercom.sms.domain.model.OutboxEvent;
+import com.intercom.sms.domain.repository.MessageRepository;
+import com.intercom.sms.domain.repository.OutboxRepository;
+import com.intercom.sms.service.MessageService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Relay that drains the SMS request outbox to Kafka in ordered batches.
+ * Each batch is claimed with FOR UPDATE SKIP LOCKED and leased for sms.outbox.relay.lease-ms,
+ * so several sms-service instances can run the relay at the same time without publishing the
+ * same entry twice. If a relay stops before settling its batch, the entries are published
+ * again once the lease expires; the processor drops the duplicates.
+ * <p>
+ * A recipient's entries are published in id order: while one waits for a retry or is leased, the
+ * recipient's later entries are not claimed. Within one batch they are handed to the producer in
+ * order, so if one fails and a later one for the same recipient is acknowledged, the failed one is
+ * published after it. The Kafka producer fails the rest of a partition's records in most such cases.
+ * Two relays that claim at the same moment can also split a recipient's due entries between them.
+ */
+@ApplicationScoped
+public class OutboxRelay {
+
+    private static final Logger LOG = Logger.getLogger(OutboxRelay.class);
+
+    @Inject
+    OutboxRepository outboxRepository;
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    MessageProducer messageProducer;
+
+    @Inject
+    MessageService messageService;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sms.outbox.relay.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "sms.outbox.relay.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "sms.outbox.relay.max-batches-per-run", defaultValue = "20")
+    int maxBatchesPerRun;
+
+    @ConfigProperty(name = "sms.outbox.relay.send-timeout-ms", defaultValue = "10000")
+    long sendTimeoutMs;
+
+    @ConfigProperty(name = "sms.outbox.relay.lease-ms", defaultValue = "30000")
+    long leaseMs;
+
+    @ConfigProperty(name = "sms.outbox.relay.max-attempts", defaultValue = "10")
+    int maxAttempts;
+
+    @ConfigProperty(name = "sms.outbox.relay.initial-backoff-ms", defaultValue = "1000")
+    long initialBackoffMs;
+
+    @ConfigProperty(name = "sms.outbox.relay.max-backoff-ms", defaultValue = "60000")
+    long maxBackoffMs;
+
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    private DistributionSummary batchSizeSummary;
+
+    @PostConstruct
+    void init() {
+        if (leaseMs <= sendTimeoutMs) {
+            LOG.warnf("sms.outbox.relay.lease-ms (%d) should exceed send-timeout-ms (%d), "
+                    + "or entries may be published twice", leaseMs, sendTimeoutMs);
+        }
+        meterRegistry.gauge("sms_outbox_relay_lag_seconds", lagMillis, lag -> lag.get() / 1000.0);
+        batchSizeSummary = DistributionSummary.builder("sms_outbox_relay_batch_size")
+                .description("Number of outbox entries claimed per relay batch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Drain due outbox entries until a short batch is seen or the per-run limit is reached
+     */
+    @Scheduled(every = "${sms.outbox.relay.interval:0.1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void relay() {
+        if (!enabled) {
+            return;
+        }
+        
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            int relayed;
+            try {
+                relayed = relayBatch();
+            } catch (Exception e) {
+                LOG.errorf(e, "Outbox relay batch failed");
+                meterRegistry.counter("sms_outbox_relay_errors_total").increment();
+                return;
+            }
+            if (relayed < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Claim, publish and settle one batch of outbox entries.
+     * The rows are only locked while they are claimed, and settled in a second short transaction,
+     * so no row lock or connection is held while waiting for the broker. Entries are deleted only
+     * after the broker has acknowledged them; failed entries are rescheduled with exponential backoff
+     * and the message is marked FAILED once the attempts are exhausted.
+     *
+     * @return the number of outbox entries claimed
+     */
+    int relayBatch() {
+        Claim claim = claimBatch();
+        List<OutboxEvent> batch = claim.events();
+        if (batch.isEmpty()) {
+            lagMillis.set(0);
+            return 0;
+        }
+        
+        batchSizeSummary.record(batch.size());
+        // Ids come from per-instance sequence blocks, so the lowest id is not always the oldest entry
+        LocalDateTime oldest = batch.stream().map(OutboxEvent::getCreatedAt).min(Comparator.naturalOrder()).orElseThrow();
+        lagMillis.set(Duration.between(oldest, LocalDateTime.now()).toMillis());
+        
+        // Hand all records to the producer in outbox order, then wait for the acks
+        List<CompletableFuture<Void>> acks = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            Message message = claim.messages().get(event.getMessageId());
+            if (message == null) {
+                LOG.warnf("Message %s not found for outbox entry %d, dropping entry", event.getMessageId(), event.getId());
+                acks.add(CompletableFuture.completedFuture(null));
+                continue;
+            }
+            try {
+                acks.add(messageProducer.sendSmsRequest(message).toCompletableFuture());
+            } catch (Exception e) {
+                acks.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        
+        List<Long> published = new ArrayList<>(batch.size());
+        List<OutboxEvent> failed = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            try {
+                acks.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                published.add(event.getId());
+            } catch (InterruptedException e) {
+                // The claimed entries are picked up again once their lease expires
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for Kafka acknowledgements", e);
+            } catch (Exception e) {
+                failed.add(event);
+                errors.add(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        }
+        
+        settleBatch(published, failed, errors);
+        
+        LOG.debugf("Outbox relay batch: %d claimed, %d published", batch.size(), published.size());
+        return batch.size();
+    }
+
+    /**
+     * Lock the next due entries and lease them by moving next_attempt_at past the publish,
+     * so other relays skip them once this transaction has committed
+     */
+    @Transactional
+    Claim claimBatch() {
+        List<OutboxEvent> batch = outboxRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return new Claim(batch, Map.of());
+        }
+        
+        List<Long> ids = batch.stream().map(OutboxEvent::getId).collect(Collectors.toList());
+        outboxRepository.lease(ids, leaseMs);
+        
+        List<UUID> messageIds = batch.stream().map(OutboxEvent::getMessageId).collect(Collectors.toList());
+        Map<UUID, Message> messages = messageRepository.findByIds(messageIds).stream()
+                .collect(Collectors.toMap(Message::getId, Function.identity()));
+        return new Claim(batch, messages);
+    }
+
+    /**
+     * Delete the published entries and reschedule or give up on the failed ones
+     */
+    @Transactional
+    void settleBatch(List<Long> published, List<OutboxEvent> failed, List<String> errors) {
+        List<Long> done = new ArrayList<>(published);
+        for (int i = 0; i < failed.size(); i++) {
+            if (handleFailure(failed.get(i), errors.get(i))) {
+                done.add(failed.get(i).getId());
+            }
+        }
+        
+        if (!done.isEmpty()) {
+            outboxRepository.deleteByIds(done);
+        }
+        if (!published.isEmpty()) {
+            meterRegistry.counter("sms_outbox_relay_published_total").increment(published.size());
+        }
+    }
+
+    /**
+     * @return true if the entry has used all attempts and is to be deleted
+     */
+    private boolean handleFailure(OutboxEvent event, String error) {
+        meterRegistry.counter("sms_outbox_relay_failed_total").increment();
+        
+        if (event.getAttempts() + 1 >= maxAttempts) {
+            LOG.errorf("Giving up on outbox entry %d for message %s after %d attempts: %s",
+                      event.getId(), event.getMessageId(), event.getAttempts() + 1, error);
+            messageService.markMessageAsFailed(event.getMessageId(), "Failed to queue message for processing: " + error);
+            meterRegistry.counter("sms_queue_failed_total").increment();
+            return true;
+        }
+        
+        long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(event.getAttempts(), 20));
+        event.recordFailure(error);
+        outboxRepository.reschedule(event, backoff);
+        LOG.warnf("Failed to publish outbox entry %d for message %s (attempt %d), retrying in %d ms: %s",
+                 event.getId(), event.getMessageId(), event.getAttempts(), backoff, error);
+        return false;
+    }
+
+    /**
+     * Entries claimed by this relay, detached, with their messages
+     */
+    record Claim(List<OutboxEvent> events, Map<UUID, Message> messages) {
+    }
+}
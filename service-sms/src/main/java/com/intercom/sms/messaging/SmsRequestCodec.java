@@ -0,0 +1,141 @@
+package com.intercom.sms.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.sms.domain.model.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encoder for SMS request payloads on the sms.requests topic.
+ * <p>
+ * Two wire formats are supported side by side while consumers migrate:
+ * <ul>
+ *   <li>JSON: the original map-based payload, UTF-8 encoded</li>
+ *   <li>Binary v1: {@code magic(1) version(1) flags(1) uuid(16) sender recipient status text createdAt [retryAt]}
+ *       where strings are an unsigned 16-bit byte length followed by UTF-8 bytes and timestamps
+ *       are epoch milliseconds (UTC) as signed 64-bit values</li>
+ * </ul>
+ * The magic byte can never start a JSON document, so consumers tell the formats apart
+ * from the first byte.
+ */
+public final class SmsRequestCodec {
+
+    public static final byte MAGIC = (byte) 0xB5;
+    public static final byte VERSION_1 = 1;
+
+    static final int FLAG_RETRY = 1;
+    static final int FLAG_RETRY_AT = 1 << 1;
+
+    private static final int HEADER_SIZE = 3;
+    private static final int UUID_SIZE = 16;
+    private static final int TIMESTAMP_SIZE = 8;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+
+    private SmsRequestCodec() {
+    }
+
+    /**
+     * Supported wire formats for outgoing SMS requests
+     */
+    public enum WireFormat {
+        JSON,
+        BINARY
+    }
+
+    /**
+     * Encode a message using the binary v1 format
+     */
+    public static byte[] encodeBinary(Message message) {
+        return encodeBinary(message, null);
+    }
+
+    /**
+     * Encode a message using the binary v1 format, marking it as a retry when retryAt is set
+     */
+    public static byte[] encodeBinary(Message message, LocalDateTime retryAt) {
+        byte[] sender = utf8(message.getSender(), "sender");
+        byte[] recipient = utf8(message.getRecipient(), "recipient");
+        byte[] status = utf8(message.getStatus().name(), "status");
+        byte[] text = utf8(message.getText(), "text");
+        
+        int size = HEADER_SIZE + UUID_SIZE
+                + 2 + sender.length
+                + 2 + recipient.length
+                + 2 + status.length
+                + 2 + text.length
+                + TIMESTAMP_SIZE
+                + (retryAt != null ? TIMESTAMP_SIZE : 0);
+        
+        int flags = retryAt != null ? FLAG_RETRY | FLAG_RETRY_AT : 0;
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MAGIC);
+        buffer.put(VERSION_1);
+        buffer.put((byte) flags);
+        buffer.putLong(message.getId().getMostSignificantBits());
+        buffer.putLong(message.getId().getLeastSignificantBits());
+        putField(buffer, sender);
+        putField(buffer, recipient);
+        putField(buffer, status);
+        putField(buffer, text);
+        buffer.putLong(toEpochMillis(message.getCreatedAt()));
+        if (retryAt != null) {
+            buffer.putLong(toEpochMillis(retryAt));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encode a message using the original JSON format
+     */
+    public static byte[] encodeJson(ObjectMapper objectMapper, Message message) throws JsonProcessingException {
+        return encodeJson(objectMapper, message, null);
+    }
+
+    /**
+     * Encode a message using the original JSON format, marking it as a retry when retryAt is set
+     */
+    public static byte[] encodeJson(ObjectMapper objectMapper, Message message, LocalDateTime retryAt)
+            throws JsonProcessingException {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("messageId", message.getId().toString());
+        payload.put("sender", message.getSender());
+        payload.put("recipient", message.getRecipient());
+        payload.put("text", message.getText());
+        payload.put("status", message.getStatus().name());
+        payload.put("createdAt", message.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        if (retryAt != null) {
+            payload.put("isRetry", true);
+            payload.put("retryAt", retryAt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        }
+        
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    private static byte[] utf8(String value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException("SMS request field '" + field + "' is required");
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("SMS request field '" + field + "' exceeds " + MAX_FIELD_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    private static void putField(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
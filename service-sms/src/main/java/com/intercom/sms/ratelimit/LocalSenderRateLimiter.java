@@ -0,0 +1,113 @@
+package com.intercom.sms.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limits held in this instance's heap. Each sender's token bucket is a single AtomicLong
+ * updated by compare-and-set, using the generic cell rate algorithm (GCRA): the long holds the
+ * theoretical arrival time (TAT) of the sender's next message. Messages are allowed if they do not
+ * push the TAT more than burst emission intervals ahead of now.
+ * <p>
+ * A bucket whose TAT has passed is full, which is the same as having no bucket, so sweep() can drop
+ * it without changing any decision. Buckets are split over stripes, and each sweep() call visits one
+ * stripe, so memory follows the number of recently active senders rather than every sender ever seen.
+ */
+public class LocalSenderRateLimiter implements SenderRateLimiter {
+
+    /** TAT of a bucket being swept; acquirers that see it start over with a new bucket */
+    private static final long REMOVED = Long.MIN_VALUE;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final ConcurrentHashMap<String, AtomicLong>[] stripes;
+    private final int stripeShift;
+    private final AtomicInteger nextSweep = new AtomicInteger();
+    private final LongSupplier nanoClock;
+
+    public LocalSenderRateLimiter(double perSecond, int burst, int stripes) {
+        this(perSecond, burst, stripes, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    LocalSenderRateLimiter(double perSecond, int burst, int stripes, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        int stripeBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, stripes - 1));
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        this.toleranceNanos = intervalNanos * burst;
+        this.stripes = new ConcurrentHashMap[1 << stripeBits];
+        this.stripeShift = 32 - stripeBits;
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    @Override
+    public long tryAcquire(String sender, int permits) {
+        ConcurrentHashMap<String, AtomicLong> stripe = stripe(sender);
+        while (true) {
+            AtomicLong bucket = stripe.get(sender);
+            if (bucket == null) {
+                bucket = stripe.computeIfAbsent(sender, key -> new AtomicLong(nanoClock.getAsLong()));
+            }
+            long now = nanoClock.getAsLong();
+            long tat = bucket.get();
+            if (tat == REMOVED) {
+                stripe.remove(sender, bucket);
+                continue;
+            }
+            long next = (tat - now > 0 ? tat : now) + intervalNanos * permits;
+            long wait = next - now - toleranceNanos;
+            if (wait > 0) {
+                return TimeUnit.NANOSECONDS.toMillis(wait + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drop the full buckets of one stripe; call regularly, each call moves on to the next stripe
+     *
+     * @return number of buckets dropped
+     */
+    public int sweep() {
+        ConcurrentHashMap<String, AtomicLong> stripe =
+                stripes[Math.floorMod(nextSweep.getAndIncrement(), stripes.length)];
+        long now = nanoClock.getAsLong();
+        int removed = 0;
+        for (Map.Entry<String, AtomicLong> entry : stripe.entrySet()) {
+            AtomicLong bucket = entry.getValue();
+            long tat = bucket.get();
+            if (tat != REMOVED && tat - now <= 0 && bucket.compareAndSet(tat, REMOVED)) {
+                stripe.remove(entry.getKey(), bucket);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Number of senders with a bucket
+     */
+    public long size() {
+        long size = 0;
+        for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * Stripe from the top bits of a multiplicative hash; the maps themselves index by the low bits,
+     * which would otherwise be the same for every sender in a stripe
+     */
+    private ConcurrentHashMap<String, AtomicLong> stripe(String sender) {
+        return stripeShift == 32 ? stripes[0] : stripes[(sender.hashCode() * 0x9E3779B9) >>> stripeShift];
+    }
+}
@@ -0,0 +1,24 @@
+package com.intercom.sms.ratelimit;
+
+/**
+ * A sender is over its rate limit for a whole batch, which is then rejected without sending any of it
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final String sender;
+    private final long waitMillis;
+
+    public RateLimitExceededException(String sender, long waitMillis) {
+        super("Sender " + sender + " is over its rate limit");
+        this.sender = sender;
+        this.waitMillis = waitMillis;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+}
@@ -0,0 +1,120 @@
+package com.intercom.sms.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
+import org.jboss.logging.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits shared by all SMS service instances. The same GCRA as LocalSenderRateLimiter runs as a
+ * Lua script in Redis, so the read-check-write is atomic and uses the Redis clock. Each sender's TAT
+ * is stored under sms:ratelimit:{sender} and expires once the bucket is full again, so idle senders
+ * take no memory.
+ * If Redis fails, the decision falls back to this instance's local limiter.
+ */
+public class RedisSenderRateLimiter implements SenderRateLimiter {
+
+    private static final Logger LOG = Logger.getLogger(RedisSenderRateLimiter.class);
+
+    private static final String KEY_PREFIX = "sms:ratelimit:";
+
+    /**
+     * KEYS[1] bucket, ARGV[1] emission interval times permits and ARGV[2] tolerance in microseconds.
+     * Returns 0 if allowed, otherwise the wait in microseconds.
+     */
+    static final String SCRIPT = String.join("\n",
+            "local time = redis.call('TIME')",
+            "local now = tonumber(time[1]) * 1000000 + tonumber(time[2])",
+            "local stored = redis.call('GET', KEYS[1])",
+            "local tat = stored and math.max(tonumber(stored), now) or now",
+            "local new_tat = tat + tonumber(ARGV[1])",
+            "local wait = new_tat - now - tonumber(ARGV[2])",
+            "if wait > 0 then return wait end",
+            "redis.call('SET', KEYS[1], string.format('%d', new_tat), 'PX', math.ceil((new_tat - now) / 1000))",
+            "return 0");
+
+    private static final String SCRIPT_SHA = sha1(SCRIPT);
+
+    private final RedisDataSource redis;
+    private final ReactiveRedisDataSource reactiveRedis;
+    private final LocalSenderRateLimiter fallback;
+    private final MeterRegistry meterRegistry;
+    private final long intervalMicros;
+    private final String toleranceMicros;
+
+    public RedisSenderRateLimiter(RedisDataSource redis, ReactiveRedisDataSource reactiveRedis,
+                                  LocalSenderRateLimiter fallback, MeterRegistry meterRegistry,
+                                  double perSecond, int burst) {
+        this.redis = redis;
+        this.reactiveRedis = reactiveRedis;
+        this.fallback = fallback;
+        this.meterRegistry = meterRegistry;
+        this.intervalMicros = (long) (TimeUnit.SECONDS.toMicros(1) / perSecond);
+        this.toleranceMicros = Long.toString(intervalMicros * burst);
+    }
+
+    @Override
+    public long tryAcquire(String sender, int permits) {
+        try {
+            return toMillis(evaluate(sender, permits));
+        } catch (Exception e) {
+            return failed(sender, permits, e);
+        }
+    }
+
+    @Override
+    public Uni<Long> tryAcquireAsync(String sender) {
+        String increment = Long.toString(intervalMicros);
+        return reactiveRedis.execute("EVALSHA", SCRIPT_SHA, "1", KEY_PREFIX + sender, increment, toleranceMicros)
+                .onFailure(RedisSenderRateLimiter::isNoScript).recoverWithUni(() ->
+                        reactiveRedis.execute("EVAL", SCRIPT, "1", KEY_PREFIX + sender, increment, toleranceMicros))
+                .map(response -> toMillis(response.toLong()))
+                .onFailure().recoverWithItem(e -> failed(sender, 1, e));
+    }
+
+    private long evaluate(String sender, int permits) {
+        String increment = Long.toString(intervalMicros * permits);
+        Response response;
+        try {
+            response = redis.execute("EVALSHA", SCRIPT_SHA, "1", KEY_PREFIX + sender, increment, toleranceMicros);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            // First call on this Redis (or after a restart): EVAL sends the script and caches it there
+            response = redis.execute("EVAL", SCRIPT, "1", KEY_PREFIX + sender, increment, toleranceMicros);
+        }
+        return response.toLong();
+    }
+
+    private long failed(String sender, int permits, Throwable e) {
+        LOG.warnf(e, "Redis rate limit check failed for sender %s, using the local limit", sender);
+        meterRegistry.counter("sms_rate_limit_errors_total").increment();
+        return fallback.tryAcquire(sender, permits);
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        return e.getMessage() != null && e.getMessage().startsWith("NOSCRIPT");
+    }
+
+    private static long toMillis(long waitMicros) {
+        return waitMicros > 0 ? TimeUnit.MICROSECONDS.toMillis(waitMicros + 999) : 0;
+    }
+
+    private static String sha1(String script) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.intercom.sms.ratelimit;
+
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Per-sender limit on the send API. Each accepted message takes one permit; a sender regains
+ * sms.rate-limit.per-second permits per second and can save up at most sms.rate-limit.burst.
+ * Permits are taken all at once or not at all. Implementations never throw.
+ */
+@FunctionalInterface
+public interface SenderRateLimiter {
+
+    /**
+     * Take permits for several messages, for callers that may block. More permits than the burst are
+     * never granted.
+     *
+     * @return 0 if the sender may send them now, otherwise how many milliseconds until it may
+     */
+    long tryAcquire(String sender, int permits);
+
+    /**
+     * Take a permit for one message, for callers that may block
+     *
+     * @return 0 if the sender may send it now, otherwise how many milliseconds until it may
+     */
+    default long tryAcquire(String sender) {
+        return tryAcquire(sender, 1);
+    }
+
+    /**
+     * Same as tryAcquire, for callers on the event loop
+     */
+    default Uni<Long> tryAcquireAsync(String sender) {
+        return Uni.createFrom().item(() -> tryAcquire(sender));
+    }
+
+    /**
+     * Retry-After value for a wait: whole seconds, rounded up
+     */
+    static long retryAfterSeconds(long waitMillis) {
+        return Math.max(1, (waitMillis + 999) / 1000);
+    }
+}
@@ -0,0 +1,88 @@
+package com.intercom.sms.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Builds the per-sender rate limiter: in-process buckets, or Redis shared by all instances when
+ * sms.rate-limit.redis.enabled is set (the in-process buckets then serve as fallback). Also sweeps
+ * idle in-process buckets, one stripe per sms.rate-limit.sweep-interval.
+ */
+@ApplicationScoped
+public class SenderRateLimiterProducer {
+
+    private static final Logger LOG = Logger.getLogger(SenderRateLimiterProducer.class);
+
+    @Inject
+    Instance<RedisDataSource> redisDataSource;
+
+    @Inject
+    Instance<ReactiveRedisDataSource> reactiveRedisDataSource;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sms.rate-limit.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "sms.rate-limit.redis.enabled", defaultValue = "false")
+    boolean redisEnabled;
+
+    @ConfigProperty(name = "sms.rate-limit.per-second", defaultValue = "50")
+    double perSecond;
+
+    @ConfigProperty(name = "sms.rate-limit.burst", defaultValue = "500")
+    int burst;
+
+    @ConfigProperty(name = "sms.batch.max-size", defaultValue = "500")
+    int maxBatchSize;
+
+    @ConfigProperty(name = "sms.rate-limit.stripes", defaultValue = "64")
+    int stripes;
+
+    private LocalSenderRateLimiter local;
+
+    @PostConstruct
+    void init() {
+        local = new LocalSenderRateLimiter(perSecond, burst, stripes);
+        meterRegistry.gauge("sms_rate_limit_buckets", local, LocalSenderRateLimiter::size);
+    }
+
+    @Produces
+    @ApplicationScoped
+    SenderRateLimiter senderRateLimiter() {
+        if (!enabled) {
+            LOG.info("Sender rate limits disabled");
+            return (sender, permits) -> 0;
+        }
+        if (burst < maxBatchSize) {
+            LOG.warnf("sms.rate-limit.burst (%d) is below sms.batch.max-size (%d); "
+                    + "batches with more messages from one sender than the burst are always rejected", burst, maxBatchSize);
+        }
+        if (redisEnabled) {
+            LOG.infof("Limiting each sender to %s messages per second (burst %d) across instances in Redis",
+                    perSecond, burst);
+            return new RedisSenderRateLimiter(redisDataSource.get(), reactiveRedisDataSource.get(), local,
+                    meterRegistry, perSecond, burst);
+        }
+        LOG.infof("Limiting each sender to %s messages per second (burst %d) per instance", perSecond, burst);
+        return local;
+    }
+
+    @Scheduled(every = "${sms.rate-limit.sweep-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sweep() {
+        int removed = local.sweep();
+        if (removed > 0) {
+            LOG.debugf("Dropped %d idle sender rate limit buckets", removed);
+        }
+    }
+}
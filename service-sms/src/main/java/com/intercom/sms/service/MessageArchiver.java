@@ -0,0 +1,85 @@
+package com.intercom.sms.service;
+
+import com.intercom.sms.domain.repository.ArchivedMessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Moves SENT and FAILED messages older than sms.archive.min-age from messages to messages_archive.
+ * Works in chunks of sms.archive.chunk-size, each in its own short transaction, so no lock
+ * is held for long and live traffic keeps flowing between chunks.
+ */
+@ApplicationScoped
+public class MessageArchiver {
+
+    private static final Logger LOG = Logger.getLogger(MessageArchiver.class);
+
+    @Inject
+    ArchivedMessageRepository archivedMessageRepository;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sms.archive.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "sms.archive.min-age", defaultValue = "90d")
+    Duration minAge;
+
+    @ConfigProperty(name = "sms.archive.chunk-size", defaultValue = "1000")
+    int chunkSize;
+
+    @ConfigProperty(name = "sms.archive.max-chunks-per-run", defaultValue = "100")
+    int maxChunksPerRun;
+
+    @ConfigProperty(name = "sms.archive.chunk-pause-ms", defaultValue = "50")
+    long chunkPauseMs;
+
+    /**
+     * Archive chunks until a short chunk is seen or the per-run limit is reached
+     */
+    @Scheduled(every = "${sms.archive.interval:5m}", delayed = "1m",
+               concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void archive() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        
+        LocalDateTime cutoff = LocalDateTime.now().minus(minAge);
+        long total = 0;
+        for (int i = 0; i < maxChunksPerRun; i++) {
+            int archived;
+            try {
+                archived = archiveChunk(cutoff);
+            } catch (Exception e) {
+                LOG.errorf(e, "Archiving messages created before %s failed", cutoff);
+                meterRegistry.counter("sms_archive_errors_total").increment();
+                break;
+            }
+            total += archived;
+            meterRegistry.counter("sms_messages_archived_total").increment(archived);
+            if (archived < chunkSize) {
+                break;
+            }
+            // Leave room for live traffic and replication between chunks
+            Thread.sleep(chunkPauseMs);
+        }
+        
+        if (total > 0) {
+            LOG.infof("Archived %d messages created before %s", total, cutoff);
+        }
+    }
+
+    @Transactional
+    int archiveChunk(LocalDateTime cutoff) {
+        return archivedMessageRepository.archiveChunk(cutoff, chunkSize);
+    }
+}
@@ -0,0 +1,50 @@
+package com.intercom.sms.service;
+
+import com.intercom.sms.domain.repository.MessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Keeps monthly partitions of messages created ahead of time, so new rows never land in
+ * messages_default. Safe to run on every instance: existing partitions are skipped, and a
+ * run that cannot get its lock within the function's lock_timeout is simply retried next time.
+ */
+@ApplicationScoped
+public class MessagePartitionMaintainer {
+
+    private static final Logger LOG = Logger.getLogger(MessagePartitionMaintainer.class);
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sms.partitions.maintenance.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "sms.partitions.months-ahead", defaultValue = "3")
+    int monthsAhead;
+
+    @Scheduled(every = "${sms.partitions.maintenance.interval:6h}",
+               concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional
+    void createPartitions() {
+        if (!enabled) {
+            return;
+        }
+        
+        int created = messageRepository.createMonthlyPartitions(monthsAhead);
+        if (created > 0) {
+            LOG.infof("Created %d monthly partitions of messages", created);
+            meterRegistry.counter("sms_message_partitions_created_total").increment(created);
+        } else {
+            LOG.debug("Monthly partitions of messages are up to date");
+        }
+    }
+}
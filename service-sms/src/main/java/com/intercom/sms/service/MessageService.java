@@ -1,21 +1,38 @@
 package com.intercom.sms.service;
 
 import com.intercom.sms.api.dto.*;
+import com.intercom.sms.cache.MessageCache;
 import com.intercom.sms.domain.model.Message;
 import com.intercom.sms.domain.model.MessageStatus;
+import com.intercom.sms.domain.model.OutboxEvent;
+import com.intercom.sms.domain.model.StatusUpdateResult;
+import com.intercom.sms.domain.repository.ArchivedMessageRepository;
 import com.intercom.sms.domain.repository.MessageRepository;
-import com.intercom.sms.messaging.MessageProducer;
+import com.intercom.sms.domain.repository.OutboxRepository;
+import com.intercom.sms.ratelimit.RateLimitExceededException;
+import com.intercom.sms.ratelimit.SenderRateLimiter;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.panache.common.Page;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.jboss.logging.Logger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -31,193 +48,396 @@ public class MessageService {
     MessageRepository messageRepository;
 
     @Inject
-    MessageProducer messageProducer;
+    OutboxRepository outboxRepository;
+
+    @Inject
+    ArchivedMessageRepository archivedMessageRepository;
 
     @Inject
     MeterRegistry meterRegistry;
 
+    @Inject
+    Validator validator;
+
+    @Inject
+    MessageCache messageCache;
+
+    @Inject
+    SenderRateLimiter rateLimiter;
+
+    @Inject
+    Event<MessageStatusChanged> statusChanged;
+
+    @Inject
+    Event<MessagesCreated> created;
+
     /**
-     * Send a new SMS message
+     * Send a new SMS message.
+     * The message and its outbox entry are committed together; the outbox relay
+     * publishes the request to Kafka, so broker latency stays off the request path.
      */
+    @Transactional
     @Timed(value = "sms_send_duration", description = "Time taken to send SMS message")
     @Counted(value = "sms_send_attempts", description = "Number of SMS send attempts")
     public MessageResponse sendMessage(SendMessageRequest request) {
         LOG.infof("Sending SMS from %s to %s", request.getSender(), request.getRecipient());
         
-        // Step 1: Persist message in separate transaction
-        Message message = persistMessage(request);
+        Message message = new Message(request.getSender(), request.getRecipient(), request.getText());
+        messageRepository.persist(message);
+        outboxRepository.persist(new OutboxEvent(message.getId(), message.getRecipient()));
+        messageRepository.flush(); // Ensure timestamps are set
         
-        // Step 2: Send to Kafka outside transaction to avoid thread conflicts
-        try {
-            messageProducer.sendSmsRequest(message);
-            LOG.infof("Message %s sent to processing queue", message.getId());
-            
-            // Increment success counter
-            meterRegistry.counter("sms_queued_total").increment();
-            
-        } catch (Exception e) {
-            LOG.errorf(e, "Failed to send message %s to processing queue", message.getId());
-            // Mark as failed in separate transaction
-            markMessageAsFailed(message.getId(), "Failed to queue message for processing: " + e.getMessage());
+        LOG.infof("Message %s persisted and queued in outbox", message.getId());
+        meterRegistry.counter("sms_queued_total").increment();
+        
+        MessageResponse response = MessageResponse.from(message);
+        created.fire(new MessagesCreated(List.of(response)));
+        return response;
+    }
+
+    /**
+     * Send a batch of SMS messages.
+     * Every item is validated on its own; valid items and their outbox entries are inserted
+     * in one batched transaction. Results keep the request order.
+     *
+     * @throws RateLimitExceededException if a sender does not have a permit for each of its valid items;
+     *                                    nothing is sent then
+     */
+    @Timed(value = "sms_batch_send_duration", description = "Time taken to send an SMS batch")
+    public BatchSendMessageResponse sendMessageBatch(List<SendMessageRequest> requests) {
+        LOG.infof("Sending SMS batch of %d messages", requests.size());
+        
+        BatchItemResult[] results = new BatchItemResult[requests.size()];
+        List<SendMessageRequest> validRequests = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        
+        // Step 1: Validate each item so one bad entry does not reject the whole batch
+        for (int i = 0; i < requests.size(); i++) {
+            SendMessageRequest request = requests.get(i);
+            if (request == null) {
+                results[i] = BatchItemResult.rejected(i, List.of("Message entry is required"));
+                continue;
+            }
             
-            // Increment failure counter
-            meterRegistry.counter("sms_queue_failed_total").increment();
+            Set<ConstraintViolation<SendMessageRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                results[i] = BatchItemResult.rejected(i, violations.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.toList()));
+                continue;
+            }
+            validRequests.add(request);
+            validIndexes.add(i);
+        }
+        
+        // Step 2: Charge each sender once for all of its valid items, so a batch cannot get around the
+        // rate limit but is not cut short by it either
+        Map<String, Integer> permits = new LinkedHashMap<>();
+        validRequests.forEach(request -> permits.merge(request.getSender(), 1, Integer::sum));
+        permits.forEach((sender, count) -> {
+            long waitMillis = rateLimiter.tryAcquire(sender, count);
+            if (waitMillis > 0) {
+                throw new RateLimitExceededException(sender, waitMillis);
+            }
+        });
+        
+        if (!validRequests.isEmpty()) {
+            // Step 3: Insert all valid messages and outbox entries in one transaction
+            List<Message> messages = persistMessages(validRequests);
+            meterRegistry.counter("sms_queued_total").increment(messages.size());
             
-            // Update the message object for response
-            message.markAsFailed("Failed to queue message for processing: " + e.getMessage());
+            List<MessageResponse> responses = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                int index = validIndexes.get(i);
+                MessageResponse response = MessageResponse.from(messages.get(i));
+                responses.add(response);
+                results[index] = BatchItemResult.accepted(index, response);
+            }
+            // persistMessages has committed, so observers run right away
+            created.fire(new MessagesCreated(responses));
         }
         
-        return mapToResponse(message);
+        meterRegistry.counter("sms_batch_rejected_total").increment(requests.size() - validRequests.size());
+        return new BatchSendMessageResponse(Arrays.asList(results));
     }
 
     /**
-     * Persist message in separate transaction
+     * Persist a batch of messages and their outbox entries in a single transaction.
+     * Inserts are grouped by Hibernate JDBC batching (quarkus.hibernate-orm.jdbc.statement-batch-size)
+     * and rewritten into multi-row INSERTs by the driver (reWriteBatchedInserts).
      */
     @Transactional
-    private Message persistMessage(SendMessageRequest request) {
-        Message message = new Message(request.getSender(), request.getRecipient(), request.getText());
-        messageRepository.persist(message);
+    List<Message> persistMessages(List<SendMessageRequest> requests) {
+        List<Message> messages = requests.stream()
+                .map(request -> new Message(request.getSender(), request.getRecipient(), request.getText()))
+                .collect(Collectors.toList());
+        messageRepository.persist(messages);
+        outboxRepository.persist(messages.stream().map(message -> new OutboxEvent(message.getId(), message.getRecipient())));
         messageRepository.flush(); // Ensure timestamps are set
         
-        LOG.infof("Message persisted with ID: %s", message.getId());
-        return message;
+        LOG.infof("Persisted batch of %d messages", messages.size());
+        return messages;
     }
 
     /**
-     * Mark message as failed in separate transaction
+     * Mark message as failed, joining the caller's transaction if there is one.
+     * Only a PENDING message is changed, so a delivery report that already arrived is kept.
      */
     @Transactional
-    private void markMessageAsFailed(UUID messageId, String reason) {
-        Optional<Message> messageOpt = messageRepository.findByIdOptional(messageId);
-        if (messageOpt.isPresent()) {
-            Message message = messageOpt.get();
-            message.markAsFailed(reason);
-            messageRepository.persist(message);
-            LOG.infof("Message %s marked as FAILED: %s", messageId, reason);
-        } else {
-            LOG.warnf("Message not found when marking as failed: %s", messageId);
+    public void markMessageAsFailed(UUID messageId, String reason) {
+        StatusUpdateResult result = messageRepository.updateStatusIfPending(messageId, MessageStatus.FAILED, reason);
+        switch (result) {
+            case APPLIED:
+                LOG.infof("Message %s marked as FAILED: %s", messageId, reason);
+                statusChanged.fire(new MessageStatusChanged(List.of(messageId)));
+                break;
+            case ALREADY_FINAL:
+                LOG.infof("Message %s already has a final status, not marking as FAILED", messageId);
+                break;
+            case NOT_FOUND:
+                LOG.warnf("Message not found when marking as failed: %s", messageId);
+                break;
         }
     }
 
     /**
-     * Get a message by ID
+     * Get a message by ID, read through the message cache.
+     * PENDING messages are cached for sms.cache.ttl.pending and final ones for sms.cache.ttl.final;
+     * status changes evict the entry after commit (see MessageCacheUpdater), and the short
+     * PENDING TTL bounds how long a read racing with that commit can serve the old status.
+     * Messages that are no longer in messages are looked up in the archive.
      */
     public Optional<MessageResponse> getMessage(UUID messageId) {
         LOG.debugf("Retrieving message with ID: %s", messageId);
         
-        return messageRepository.findByIdOptional(messageId)
-                .map(this::mapToResponse);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Optional<MessageResponse> cached = messageCache.get(messageId);
+        sample.stop(meterRegistry.timer("sms_message_cache_lookup_duration", "backend", messageCache.backend()));
+        
+        if (cached.isPresent()) {
+            meterRegistry.counter("sms_message_cache_hits_total", "backend", messageCache.backend()).increment();
+            return cached;
+        }
+        meterRegistry.counter("sms_message_cache_misses_total", "backend", messageCache.backend()).increment();
+        
+        Optional<MessageResponse> message = messageRepository.findByIdOptional(messageId)
+                .map(MessageResponse::from);
+        if (message.isEmpty()) {
+            message = archivedMessageRepository.findByIdOptional(messageId)
+                    .map(MessageResponse::from);
+            message.ifPresent(archived -> meterRegistry.counter("sms_archive_lookups_total").increment());
+        }
+        message.ifPresent(messageCache::put);
+        return message;
     }
 
     /**
-     * Get messages for a specific user with pagination
+     * Get messages for a specific user with pagination.
+     * With a cursor the page is read by keyset on (created_at, id); otherwise the offset page is used.
+     * Either way next_cursor points after the last row, so offset clients can switch to cursors.
+     *
+     * @param cursor       next_cursor from the previous page, or null for offset paging
+     * @param includeTotal whether to count matching messages; null means only for offset pages
+     * @throws IllegalArgumentException if the cursor is invalid
      */
-    public MessageListResponse getUserMessages(String userId, int page, int size, MessageStatus status) {
-        LOG.debugf("Retrieving messages for user %s, page %d, size %d, status %s", 
-                  userId, page, size, status);
+    public MessageListResponse getUserMessages(String userId, int page, int size, MessageStatus status,
+                                               String cursor, Boolean includeTotal) {
+        LOG.debugf("Retrieving messages for user %s, page %d, size %d, status %s, cursor %s", 
+                  userId, page, size, status, cursor);
         
-        Page pageRequest = Page.of(page, size);
+        boolean keyset = cursor != null;
         List<Message> messages;
-        long totalCount;
         
-        if (status != null) {
-            messages = messageRepository.findByStatusAndUser(status, userId, pageRequest);
-            totalCount = messageRepository.countByStatus(status);
+        if (keyset) {
+            PageCursor after = PageCursor.decode(cursor, PageCursor.SortKey.CREATED_AT);
+            messages = messageRepository.findByUserAfter(userId, status, after.getTimestamp(), after.getId(), size);
+        } else if (status != null) {
+            messages = messageRepository.findByStatusAndUser(status, userId, Page.of(page, size));
         } else {
-            messages = messageRepository.findByUser(userId, pageRequest);
-            totalCount = messageRepository.countByUser(userId);
+            messages = messageRepository.findByUser(userId, Page.of(page, size));
+        }
+        
+        Long totalCount = null;
+        if (includeTotal != null ? includeTotal : !keyset) {
+            totalCount = status != null
+                    ? messageRepository.countByStatusAndUser(status, userId)
+                    : messageRepository.countByUser(userId);
+        }
+        
+        String nextCursor = null;
+        if (messages.size() == size) {
+            Message last = messages.get(messages.size() - 1);
+            nextCursor = new PageCursor(PageCursor.SortKey.CREATED_AT, last.getCreatedAt(), last.getId()).encode();
         }
         
         List<MessageResponse> messageResponses = messages.stream()
-                .map(this::mapToResponse)
+                .map(MessageResponse::from)
                 .collect(Collectors.toList());
         
-        return new MessageListResponse(messageResponses, totalCount, page, size);
+        return new MessageListResponse(messageResponses, totalCount, keyset ? null : page, size, nextCursor);
     }
 
     /**
-     * Process delivery report from processor service
+     * Process delivery report from processor service.
+     * Applied with one conditional UPDATE; only PENDING messages change, so a late report
+     * cannot overwrite a status that is already final.
      */
     @Transactional
     @Timed(value = "sms_callback_duration", description = "Time taken to process delivery callbacks")
-    public boolean processDeliveryReport(DeliveryReportRequest deliveryReport) {
+    public StatusUpdateResult processDeliveryReport(DeliveryReportRequest deliveryReport) {
         LOG.infof("Processing delivery report for message %s with status %s", 
                  deliveryReport.getMessageId(), deliveryReport.getStatus());
         
-        Optional<Message> messageOpt = messageRepository.findByIdOptional(deliveryReport.getMessageId());
-        
-        if (messageOpt.isEmpty()) {
-            LOG.warnf("Message not found for delivery report: %s", deliveryReport.getMessageId());
-            return false;
+        MessageStatus status = deliveryReport.getStatus();
+        if (status != MessageStatus.SENT && status != MessageStatus.FAILED) {
+            throw new IllegalArgumentException("Unexpected status in delivery report: " + status);
         }
         
-        Message message = messageOpt.get();
+        String failureReason = status == MessageStatus.FAILED ? deliveryReport.getFailureReason() : null;
+        StatusUpdateResult result = messageRepository.updateStatusIfPending(
+                deliveryReport.getMessageId(), status, failureReason);
         
-        // Update message status based on delivery report
-        switch (deliveryReport.getStatus()) {
-            case SENT:
-                message.markAsSent();
-                LOG.infof("Message %s marked as SENT", message.getId());
-                
-                // Increment success counter
-                meterRegistry.counter("sms_sent_total").increment();
+        switch (result) {
+            case APPLIED:
+                LOG.infof("Message %s marked as %s", deliveryReport.getMessageId(), status);
+                meterRegistry.counter(status == MessageStatus.SENT ? "sms_sent_total" : "sms_failed_total").increment();
+                statusChanged.fire(new MessageStatusChanged(List.of(deliveryReport.getMessageId())));
                 break;
-            case FAILED:
-                message.markAsFailed(deliveryReport.getFailureReason());
-                LOG.infof("Message %s marked as FAILED: %s", message.getId(), deliveryReport.getFailureReason());
-                
-                // Increment failure counter
-                meterRegistry.counter("sms_failed_total").increment();
+            case ALREADY_FINAL:
+                LOG.warnf("Ignoring %s report for message %s, status is already final", 
+                         status, deliveryReport.getMessageId());
+                meterRegistry.counter("sms_delivery_reports_already_final_total").increment();
+                break;
+            case NOT_FOUND:
+                LOG.warnf("Message not found for delivery report: %s", deliveryReport.getMessageId());
                 break;
-            default:
-                LOG.warnf("Unexpected status in delivery report: %s", deliveryReport.getStatus());
-                return false;
+        }
+        return result;
+    }
+
+    /**
+     * Apply a batch of delivery reports with one conditional UPDATE per (status, failure reason) group.
+     * When a message appears more than once, its last report wins.
+     *
+     * @return the number of reports applied, the IDs of messages that were not found, and the IDs
+     *         of messages whose status was already final
+     */
+    @Transactional
+    @Timed(value = "sms_callback_batch_duration", description = "Time taken to process delivery report batches")
+    public DeliveryReportBatchResponse processDeliveryReports(List<DeliveryReportRequest> reports) {
+        Map<UUID, DeliveryReportRequest> latest = new LinkedHashMap<>();
+        for (DeliveryReportRequest report : reports) {
+            latest.put(report.getMessageId(), report);
         }
         
-        messageRepository.persist(message);
-        return true;
+        List<UUID> failedIds = new ArrayList<>();
+        List<UUID> alreadyFinalIds = new ArrayList<>();
+        Map<MessageStatus, Map<String, List<UUID>>> groups = new EnumMap<>(MessageStatus.class);
+        for (DeliveryReportRequest report : latest.values()) {
+            MessageStatus status = report.getStatus();
+            if (status != MessageStatus.SENT && status != MessageStatus.FAILED) {
+                LOG.warnf("Unexpected status in delivery report: %s", status);
+                failedIds.add(report.getMessageId());
+                continue;
+            }
+            String reason = status == MessageStatus.FAILED ? report.getFailureReason() : null;
+            groups.computeIfAbsent(status, s -> new HashMap<>())
+                    .computeIfAbsent(reason, r -> new ArrayList<>())
+                    .add(report.getMessageId());
+        }
+        
+        List<UUID> appliedIds = new ArrayList<>();
+        for (Map.Entry<MessageStatus, Map<String, List<UUID>>> byStatus : groups.entrySet()) {
+            MessageStatus status = byStatus.getKey();
+            for (Map.Entry<String, List<UUID>> byReason : byStatus.getValue().entrySet()) {
+                List<UUID> ids = byReason.getValue();
+                Map<UUID, StatusUpdateResult> results =
+                        messageRepository.updateStatusIfPending(ids, status, byReason.getKey());
+                
+                int groupApplied = 0;
+                for (UUID id : ids) {
+                    switch (results.get(id)) {
+                        case APPLIED:
+                            appliedIds.add(id);
+                            groupApplied++;
+                            break;
+                        case ALREADY_FINAL:
+                            alreadyFinalIds.add(id);
+                            break;
+                        case NOT_FOUND:
+                            failedIds.add(id);
+                            break;
+                    }
+                }
+                meterRegistry.counter(status == MessageStatus.SENT ? "sms_sent_total" : "sms_failed_total")
+                        .increment(groupApplied);
+            }
+        }
+        
+        if (!appliedIds.isEmpty()) {
+            statusChanged.fire(new MessageStatusChanged(appliedIds));
+        }
+        if (!failedIds.isEmpty()) {
+            LOG.warnf("%d delivery reports could not be applied", failedIds.size());
+        }
+        if (!alreadyFinalIds.isEmpty()) {
+            LOG.warnf("Ignoring %d delivery reports for messages already in a final status", alreadyFinalIds.size());
+            meterRegistry.counter("sms_delivery_reports_already_final_total").increment(alreadyFinalIds.size());
+        }
+        return new DeliveryReportBatchResponse(appliedIds.size(), failedIds, alreadyFinalIds);
     }
 
     /**
-     * Get message statistics
+     * Get message statistics from the maintained per-status counters (see StatusCounterReconciler),
+     * including archived messages
      */
     public MessageStatsResponse getMessageStats() {
-        long pendingCount = messageRepository.countByStatus(MessageStatus.PENDING);
-        long sentCount = messageRepository.countByStatus(MessageStatus.SENT);
-        long failedCount = messageRepository.countByStatus(MessageStatus.FAILED);
-        long totalCount = messageRepository.count();
+        Map<MessageStatus, Long> counts = messageRepository.countAllByStatus();
+        archivedMessageRepository.countAllByStatus()
+                .forEach((status, count) -> counts.merge(status, count, Long::sum));
+        long pendingCount = counts.get(MessageStatus.PENDING);
+        long sentCount = counts.get(MessageStatus.SENT);
+        long failedCount = counts.get(MessageStatus.FAILED);
+        long totalCount = pendingCount + sentCount + failedCount;
         
         return new MessageStatsResponse(totalCount, pendingCount, sentCount, failedCount);
     }
 
     /**
-     * Get failed messages for analysis
+     * Get failed messages for analysis, most recently failed first.
+     * Paged by keyset on (updated_at, id) when a cursor is given, by offset otherwise.
+     *
+     * @param cursor       next_cursor from the previous page, or null for offset paging
+     * @param includeTotal whether to include the failed count; null means only for offset pages
+     * @throws IllegalArgumentException if the cursor is invalid
      */
-    public MessageListResponse getFailedMessages(int page, int size) {
-        Page pageRequest = Page.of(page, size);
-        List<Message> messages = messageRepository.findFailedMessages(pageRequest);
-        long totalCount = messageRepository.countByStatus(MessageStatus.FAILED);
+    public MessageListResponse getFailedMessages(int page, int size, String cursor, Boolean includeTotal) {
+        boolean keyset = cursor != null;
+        List<Message> messages;
+        
+        if (keyset) {
+            PageCursor after = PageCursor.decode(cursor, PageCursor.SortKey.UPDATED_AT);
+            messages = messageRepository.findFailedMessagesAfter(after.getTimestamp(), after.getId(), size);
+        } else {
+            messages = messageRepository.findFailedMessages(Page.of(page, size));
+        }
+        
+        Long totalCount = null;
+        if (includeTotal != null ? includeTotal : !keyset) {
+            totalCount = messageRepository.countAllByStatus().get(MessageStatus.FAILED);
+        }
+        
+        String nextCursor = null;
+        if (messages.size() == size) {
+            Message last = messages.get(messages.size() - 1);
+            nextCursor = new PageCursor(PageCursor.SortKey.UPDATED_AT, last.getUpdatedAt(), last.getId()).encode();
+        }
         
         List<MessageResponse> messageResponses = messages.stream()
-                .map(this::mapToResponse)
+                .map(MessageResponse::from)
                 .collect(Collectors.toList());
         
-        return new MessageListResponse(messageResponses, totalCount, page, size);
-    }
-
-    /**
-     * Map Message entity to MessageResponse DTO
-     */
-    private MessageResponse mapToResponse(Message message) {
-        return new MessageResponse(
-                message.getId(),
-                message.getSender(),
-                message.getRecipient(),
-                message.getText(),
-                message.getStatus(),
-                message.getFailureReason(),
-                message.getCreatedAt(),
-                message.getUpdatedAt()
-        );
+        return new MessageListResponse(messageResponses, totalCount, keyset ? null : page, size, nextCursor);
     }
 }
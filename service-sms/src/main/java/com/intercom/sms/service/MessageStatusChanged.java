@@ -0,0 +1,10 @@
+package com.intercom.sms.service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * CDI event fired when the status of one or more messages was changed in the current transaction
+ */
+public record MessageStatusChanged(List<UUID> messageIds) {
+}
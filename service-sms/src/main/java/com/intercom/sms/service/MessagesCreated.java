@@ -0,0 +1,11 @@
+package com.intercom.sms.service;
+
+import com.intercom.sms.api.dto.MessageResponse;
+
+import java.util.List;
+
+/**
+ * CDI event fired when new messages were stored in the current transaction
+ */
+public record MessagesCreated(List<MessageResponse> messages) {
+}
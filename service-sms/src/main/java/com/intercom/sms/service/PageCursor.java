@@ -0,0 +1,85 @@
+package com.intercom.sms.service;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset pagination cursor: the sort timestamp and ID of the last row of a page.
+ * Encoded as URL-safe base64 of a fixed 29-byte layout (sort key, epoch seconds, nanos, UUID),
+ * so clients cannot depend on its contents and a cursor from one listing is rejected by another.
+ */
+public final class PageCursor {
+
+    /**
+     * Which column the listing is ordered by, together with id
+     */
+    public enum SortKey {
+        CREATED_AT,
+        UPDATED_AT
+    }
+
+    private static final int ENCODED_LENGTH = 1 + Long.BYTES + Integer.BYTES + 2 * Long.BYTES;
+
+    private final SortKey sortKey;
+    private final LocalDateTime timestamp;
+    private final UUID id;
+
+    public PageCursor(SortKey sortKey, LocalDateTime timestamp, UUID id) {
+        this.sortKey = sortKey;
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_LENGTH);
+        buffer.put((byte) sortKey.ordinal());
+        buffer.putLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(timestamp.getNano());
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decode a cursor previously returned for a listing ordered by the given key
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another listing
+     */
+    public static PageCursor decode(String cursor, SortKey expected) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length != ENCODED_LENGTH) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int sortKey = buffer.get();
+            if (sortKey != expected.ordinal()) {
+                throw new IllegalArgumentException("Cursor does not belong to this listing");
+            }
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            return new PageCursor(expected, timestamp, id);
+
+        } catch (BufferUnderflowException | DateTimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+}
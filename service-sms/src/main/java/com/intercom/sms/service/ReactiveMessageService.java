@@ -0,0 +1,64 @@
+package com.intercom.sms.service;
+
+import com.intercom.sms.api.dto.MessageResponse;
+import com.intercom.sms.api.dto.SendMessageRequest;
+import com.intercom.sms.domain.model.Message;
+import com.intercom.sms.domain.model.UuidV7Generator;
+import com.intercom.sms.domain.repository.ReactiveMessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link MessageService#sendMessage}, for POST /v1/messages/reactive.
+ * It writes the same rows (message plus outbox entry) through the reactive PostgreSQL pool, so it
+ * holds neither a worker thread nor a JDBC connection while the insert runs; the outbox relay
+ * publishes to Kafka in both cases. Responses are mapped by MessageService.
+ */
+@ApplicationScoped
+public class ReactiveMessageService {
+
+    private static final Logger LOG = Logger.getLogger(ReactiveMessageService.class);
+
+    @Inject
+    ReactiveMessageRepository reactiveMessageRepository;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    Event<MessagesCreated> created;
+
+    /**
+     * Send a new SMS message without blocking the calling thread
+     */
+    public Uni<MessageResponse> sendMessage(SendMessageRequest request) {
+        LOG.infof("Sending SMS from %s to %s (reactive)", request.getSender(), request.getRecipient());
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        // Id and timestamps are what Hibernate would have generated on the blocking path
+        Message message = new Message(request.getSender(), request.getRecipient(), request.getText());
+        LocalDateTime now = LocalDateTime.now();
+        message.setId(UuidV7Generator.next());
+        message.setCreatedAt(now);
+        message.setUpdatedAt(now);
+
+        return reactiveMessageRepository.persistWithOutbox(message)
+                .map(ignored -> {
+                    LOG.infof("Message %s persisted and queued in outbox", message.getId());
+                    meterRegistry.counter("sms_queued_total").increment();
+                    MessageResponse response = MessageResponse.from(message);
+                    // Committed already, so observers run right away
+                    created.fire(new MessagesCreated(List.of(response)));
+                    return response;
+                })
+                .onTermination().invoke(() -> sample.stop(meterRegistry.timer("sms_send_reactive_duration")));
+    }
+}
@@ -0,0 +1,54 @@
+package com.intercom.sms.service;
+
+import com.intercom.sms.domain.model.MessageStatus;
+import com.intercom.sms.domain.repository.MessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+
+/**
+ * Periodically checks the trigger-maintained message_status_counters against real counts
+ * and corrects any drift, e.g. from rows changed with triggers disabled or restored from backup.
+ * This is the only place that still scans messages for counts.
+ */
+@ApplicationScoped
+public class StatusCounterReconciler {
+
+    private static final Logger LOG = Logger.getLogger(StatusCounterReconciler.class);
+
+    @Inject
+    MessageRepository messageRepository;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sms.stats.reconcile.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Scheduled(every = "${sms.stats.reconcile.interval:15m}", delayed = "${sms.stats.reconcile.interval:15m}",
+               concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional
+    void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        
+        Map<MessageStatus, Long> drift = messageRepository.reconcileStatusCounters();
+        if (drift.isEmpty()) {
+            LOG.debug("Message status counters are in sync");
+            return;
+        }
+        
+        drift.forEach((status, amount) -> {
+            LOG.warnf("Corrected %s counter drift of %d", status, amount);
+            meterRegistry.counter("sms_stats_counter_drift_total", "status", status.name())
+                    .increment(Math.abs(amount));
+        });
+    }
+}
@@ -0,0 +1,15 @@
+-- Transactional outbox for the sms.requests topic.
+-- Rows are written in the same transaction as the message and drained to Kafka by the outbox relay.
+CREATE SEQUENCE sms_request_outbox_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE sms_request_outbox (
+    id BIGINT PRIMARY KEY,
+    message_id UUID NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(500),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Relay polls due rows in id order
+CREATE INDEX idx_sms_request_outbox_due ON sms_request_outbox(next_attempt_at, id);
@@ -0,0 +1,87 @@
+-- Per-status message counts for the stats endpoint, maintained in the same transaction as
+-- every insert, status change and delete on messages.
+-- Each status is split over 16 stripes; a backend always writes the stripe picked by its pid,
+-- so concurrent connections update different rows instead of queueing on one hot row.
+CREATE TABLE message_status_counters (
+    status VARCHAR(10) NOT NULL,
+    stripe SMALLINT NOT NULL,
+    count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (status, stripe)
+);
+
+INSERT INTO message_status_counters (status, stripe, count)
+SELECT s.status, g.stripe, 0
+FROM (VALUES ('PENDING'), ('SENT'), ('FAILED')) AS s(status),
+     generate_series(0, 15) AS g(stripe);
+
+-- Seed stripe 0 with the existing rows
+UPDATE message_status_counters c
+SET count = existing.count
+FROM (SELECT status, COUNT(*) AS count FROM messages GROUP BY status) existing
+WHERE c.status = existing.status AND c.stripe = 0;
+
+-- Apply per-status deltas from a statement's transition tables.
+-- Statuses are updated in a fixed order so two backends sharing a stripe cannot deadlock.
+CREATE FUNCTION apply_message_status_deltas(deltas JSONB) RETURNS VOID AS $$
+DECLARE
+    delta RECORD;
+BEGIN
+    FOR delta IN
+        SELECT key AS status, value::BIGINT AS amount
+        FROM jsonb_each_text(deltas)
+        WHERE value::BIGINT <> 0
+        ORDER BY key
+    LOOP
+        UPDATE message_status_counters
+        SET count = count + delta.amount
+        WHERE status = delta.status AND stripe = pg_backend_pid() % 16;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION count_messages_inserted() RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM apply_message_status_deltas(
+        (SELECT COALESCE(jsonb_object_agg(status, n), '{}') 
+         FROM (SELECT status, COUNT(*) AS n FROM new_rows GROUP BY status) t));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION count_messages_updated() RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM apply_message_status_deltas(
+        (SELECT COALESCE(jsonb_object_agg(status, n), '{}')
+         FROM (SELECT status, SUM(n) AS n
+               FROM (SELECT status, -COUNT(*) AS n FROM old_rows GROUP BY status
+                     UNION ALL
+                     SELECT status, COUNT(*) AS n FROM new_rows GROUP BY status) changes
+               GROUP BY status) t));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION count_messages_deleted() RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM apply_message_status_deltas(
+        (SELECT COALESCE(jsonb_object_agg(status, -n), '{}')
+         FROM (SELECT status, COUNT(*) AS n FROM old_rows GROUP BY status) t));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Statement-level triggers: a batched insert or set-based update touches each counter once
+CREATE TRIGGER trg_messages_count_insert
+    AFTER INSERT ON messages
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_messages_inserted();
+
+CREATE TRIGGER trg_messages_count_update
+    AFTER UPDATE ON messages
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_messages_updated();
+
+CREATE TRIGGER trg_messages_count_delete
+    AFTER DELETE ON messages
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_messages_deleted();
@@ -0,0 +1,9 @@
+-- Keyset pagination orders listings by (created_at, id) and failures by (updated_at, id).
+-- Extend the user indexes with id so a page is a single ordered index range scan.
+DROP INDEX idx_messages_user_created;
+DROP INDEX idx_messages_user_created_2;
+CREATE INDEX idx_messages_user_created ON messages(sender, created_at DESC, id DESC);
+CREATE INDEX idx_messages_user_created_2 ON messages(recipient, created_at DESC, id DESC);
+
+-- Failed messages, most recently failed first; partial so it only holds FAILED rows
+CREATE INDEX idx_messages_failed_updated ON messages(updated_at DESC, id DESC) WHERE status = 'FAILED';
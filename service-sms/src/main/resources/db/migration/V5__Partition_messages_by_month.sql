@@ -0,0 +1,114 @@
+-- Partition messages by month of created_at.
+-- Old months can be dropped or archived as a whole, and queries bounded on created_at only touch
+-- the partitions they need. The primary key has to include the partition key, so it becomes
+-- (id, created_at); lookups by id add created_at bounds where they can (see CreatedAtBounds).
+--
+-- This migration copies every row, holding locks on messages until it commits. On a large
+-- table run it in a maintenance window.
+
+ALTER TABLE messages RENAME TO messages_unpartitioned;
+ALTER TABLE messages_unpartitioned DROP CONSTRAINT messages_pkey;
+DROP INDEX idx_messages_sender;
+DROP INDEX idx_messages_recipient;
+DROP INDEX idx_messages_status;
+DROP INDEX idx_messages_created_at;
+DROP INDEX idx_messages_updated_at;
+DROP INDEX idx_messages_user_created;
+DROP INDEX idx_messages_user_created_2;
+DROP INDEX idx_messages_status_user;
+DROP INDEX idx_messages_status_user_2;
+DROP INDEX idx_messages_failed_updated;
+
+CREATE TABLE messages (
+    id UUID NOT NULL DEFAULT gen_random_uuid(),
+    sender VARCHAR(20) NOT NULL,
+    recipient VARCHAR(20) NOT NULL,
+    text VARCHAR(1600) NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING',
+    failure_reason VARCHAR(500),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT chk_status CHECK (status IN ('PENDING', 'SENT', 'FAILED')),
+    CONSTRAINT chk_sender_format CHECK (sender ~ '^\+?[1-9]\d{1,14}$'),
+    CONSTRAINT chk_recipient_format CHECK (recipient ~ '^\+?[1-9]\d{1,14}$'),
+    CONSTRAINT chk_text_length CHECK (length(text) >= 1 AND length(text) <= 1600)
+) PARTITION BY RANGE (created_at);
+
+-- Safety net for rows outside every monthly partition; create_message_partitions moves
+-- them into their month when it is created
+CREATE TABLE messages_default PARTITION OF messages DEFAULT;
+
+-- Create the monthly partitions messages_YYYY_MM from from_month through to_month, skipping
+-- those that exist. Each partition is built as a plain table and then attached, which only
+-- takes a SHARE UPDATE EXCLUSIVE lock on messages, so inserts and reads carry on meanwhile.
+CREATE FUNCTION create_message_partitions(from_month DATE, to_month DATE) RETURNS INTEGER AS $$
+DECLARE
+    month_start TIMESTAMP;
+    month_end TIMESTAMP;
+    partition_name TEXT;
+    created INTEGER := 0;
+BEGIN
+    PERFORM set_config('lock_timeout', '5s', true);
+
+    FOR month_start IN
+        SELECT generate_series(date_trunc('month', from_month), date_trunc('month', to_month), INTERVAL '1 month')
+    LOOP
+        month_end := month_start + INTERVAL '1 month';
+        partition_name := 'messages_' || to_char(month_start, 'YYYY_MM');
+        CONTINUE WHEN to_regclass(partition_name) IS NOT NULL;
+
+        EXECUTE format('CREATE TABLE %I (LIKE messages INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+        -- Lets ATTACH skip its validation scan
+        EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (created_at >= %L AND created_at < %L)',
+                       partition_name, partition_name || '_range', month_start, month_end);
+        EXECUTE format('WITH moved AS (DELETE FROM messages_default WHERE created_at >= %L AND created_at < %L '
+                       'RETURNING *) INSERT INTO %I SELECT * FROM moved', month_start, month_end, partition_name);
+        EXECUTE format('ALTER TABLE messages ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, month_start, month_end);
+        EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', partition_name, partition_name || '_range');
+        created := created + 1;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Every month that has data, plus three months ahead; MessagePartitionMaintainer keeps extending this
+SELECT create_message_partitions(
+    COALESCE((SELECT MIN(created_at) FROM messages_unpartitioned), CURRENT_TIMESTAMP)::DATE,
+    (CURRENT_TIMESTAMP + INTERVAL '3 months')::DATE);
+
+-- The counters already include these rows, and messages has no counter triggers yet
+INSERT INTO messages (id, sender, recipient, text, status, failure_reason, created_at, updated_at)
+SELECT id, sender, recipient, text, status, failure_reason, created_at, updated_at
+FROM messages_unpartitioned;
+
+DROP TABLE messages_unpartitioned;
+
+-- Secondary indexes, down from nine. Per-user listings and counts use the (user, created_at, id)
+-- indexes, which carry status so status filters and counts need no heap access; plain sender,
+-- recipient, status and updated_at indexes had no remaining queries.
+CREATE INDEX idx_messages_user_created ON messages(sender, created_at DESC, id DESC) INCLUDE (status);
+CREATE INDEX idx_messages_user_created_2 ON messages(recipient, created_at DESC, id DESC) INCLUDE (status);
+CREATE INDEX idx_messages_created_at ON messages(created_at);
+CREATE INDEX idx_messages_failed_updated ON messages(updated_at DESC, id DESC) WHERE status = 'FAILED';
+
+CREATE TRIGGER update_messages_updated_at
+    BEFORE UPDATE ON messages
+    FOR EACH ROW
+    EXECUTE FUNCTION update_updated_at_column();
+
+CREATE TRIGGER trg_messages_count_insert
+    AFTER INSERT ON messages
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_messages_inserted();
+
+CREATE TRIGGER trg_messages_count_update
+    AFTER UPDATE ON messages
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_messages_updated();
+
+CREATE TRIGGER trg_messages_count_delete
+    AFTER DELETE ON messages
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_messages_deleted();
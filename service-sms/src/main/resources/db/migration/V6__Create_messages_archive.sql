@@ -0,0 +1,38 @@
+-- Cold storage for old messages in a final status, filled in chunks by MessageArchiver.
+-- Only looked up by id (GET /v1/messages/{id} falls back to it), so the primary key is its only index.
+CREATE TABLE messages_archive (
+    id UUID PRIMARY KEY,
+    sender VARCHAR(20) NOT NULL,
+    recipient VARCHAR(20) NOT NULL,
+    text VARCHAR(1600) NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    failure_reason VARCHAR(500),
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Per-status counts of archived messages; /v1/messages/stats adds them to message_status_counters.
+-- Moving a row out of messages decrements those counters through the delete trigger.
+CREATE TABLE message_archive_counters (
+    status VARCHAR(10) PRIMARY KEY,
+    count BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO message_archive_counters (status, count)
+VALUES ('PENDING', 0), ('SENT', 0), ('FAILED', 0);
+
+CREATE FUNCTION count_messages_archived() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE message_archive_counters c
+    SET count = c.count + n.count
+    FROM (SELECT status, COUNT(*) AS count FROM new_rows GROUP BY status) n
+    WHERE c.status = n.status;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_messages_archive_count_insert
+    AFTER INSERT ON messages_archive
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_messages_archived();
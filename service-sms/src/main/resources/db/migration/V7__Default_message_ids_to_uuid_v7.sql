@@ -0,0 +1,15 @@
+-- Time-ordered UUIDv7 ids for messages inserted without an id (the application generates its own,
+-- see UuidV7Generator). Existing random v4 ids stay as they are.
+-- Built from gen_random_uuid(): the first 48 bits are replaced with the epoch milliseconds and the
+-- version nibble is changed from 4 (0100) to 7 (0111); PostgreSQL 18 has uuidv7() built in.
+CREATE FUNCTION uuid_generate_v7() RETURNS UUID AS $$
+    SELECT encode(
+        set_bit(set_bit(
+            overlay(uuid_send(gen_random_uuid())
+                    PLACING substring(int8send(floor(extract(epoch FROM clock_timestamp()) * 1000)::BIGINT) FROM 3)
+                    FROM 1 FOR 6),
+            52, 1), 53, 1),
+        'hex')::UUID;
+$$ LANGUAGE SQL VOLATILE;
+
+ALTER TABLE messages ALTER COLUMN id SET DEFAULT uuid_generate_v7();
@@ -0,0 +1,11 @@
+-- Recipient of each outbox entry, so the relay can hold back a recipient's later entries while an
+-- earlier one waits for a retry or is being published by another relay.
+ALTER TABLE sms_request_outbox ADD COLUMN recipient VARCHAR(20);
+
+UPDATE sms_request_outbox o
+SET recipient = m.recipient
+FROM messages m
+WHERE m.id = o.message_id;
+
+-- Relay looks for earlier entries of the same recipient
+CREATE INDEX idx_sms_request_outbox_recipient ON sms_request_outbox(recipient, id);
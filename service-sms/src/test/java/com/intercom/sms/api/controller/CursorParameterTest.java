@@ -0,0 +1,83 @@
+package com.intercom.sms.api.controller;
+
+import com.intercom.sms.api.dto.ErrorResponse;
+import com.intercom.sms.domain.repository.MessageRepository;
+import com.intercom.sms.service.MessageService;
+import com.intercom.sms.service.PageCursor;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * A cursor the client tampered with is a bad request, not a server error
+ */
+@ExtendWith(MockitoExtension.class)
+class CursorParameterTest {
+
+    private static final String TRUNCATED = truncated(PageCursor.SortKey.UPDATED_AT);
+    private static final String TRUNCATED_USER = truncated(PageCursor.SortKey.CREATED_AT);
+
+    @Mock
+    MessageRepository messageRepository;
+
+    @InjectMocks
+    MessageService messageService;
+
+    private MessageController messageController;
+    private UserMessageController userMessageController;
+
+    @BeforeEach
+    void setUp() {
+        messageController = new MessageController();
+        messageController.messageService = messageService;
+
+        userMessageController = new UserMessageController();
+        userMessageController.messageService = messageService;
+    }
+
+    @Test
+    void malformedCursorOnFailedMessagesIsBadRequest() {
+        assertInvalidCursor(messageController.getFailedMessages(0, 20, "not a cursor!", null));
+    }
+
+    @Test
+    void truncatedCursorOnFailedMessagesIsBadRequest() {
+        assertInvalidCursor(messageController.getFailedMessages(0, 20, TRUNCATED, null));
+    }
+
+    @Test
+    void malformedCursorOnUserMessagesIsBadRequest() {
+        assertInvalidCursor(userMessageController.getUserMessages("+1234567890", 0, 20, null, "%%%", null));
+    }
+
+    @Test
+    void truncatedCursorOnUserMessagesIsBadRequest() {
+        assertInvalidCursor(userMessageController.getUserMessages("+1234567890", 0, 20, null, TRUNCATED_USER, null));
+    }
+
+    /**
+     * A cursor this listing issued, with its last four characters cut off
+     */
+    private static String truncated(PageCursor.SortKey sortKey) {
+        String cursor = new PageCursor(sortKey, LocalDateTime.of(2024, 3, 15, 10, 30), UUID.randomUUID()).encode();
+        return cursor.substring(0, cursor.length() - 4);
+    }
+
+    private void assertInvalidCursor(Response response) {
+        assertEquals(400, response.getStatus());
+        ErrorResponse error = assertInstanceOf(ErrorResponse.class, response.getEntity());
+        assertEquals("INVALID_CURSOR", error.getErrorCode());
+        verifyNoInteractions(messageRepository);
+    }
+}
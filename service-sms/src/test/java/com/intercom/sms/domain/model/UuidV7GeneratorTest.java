@@ -0,0 +1,93 @@
+package com.intercom.sms.domain.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UuidV7GeneratorTest {
+
+    private static final long EPOCH_MILLIS = 1_710_498_645_123L;
+
+    @Test
+    void setsVersionAndVariantBits() {
+        for (int i = 0; i < 1000; i++) {
+            UUID id = UuidV7Generator.next();
+
+            assertEquals(7, id.version());
+            assertEquals(2, id.variant());
+        }
+    }
+
+    @Test
+    void carriesTheClockInTheTopBits() {
+        UUID id = UuidV7Generator.next(new AtomicLong(), EPOCH_MILLIS);
+
+        assertEquals(EPOCH_MILLIS, millis(id));
+        assertEquals(0, counter(id));
+    }
+
+    @Test
+    void isStrictlyIncreasingWithinOneMillisecond() {
+        AtomicLong last = new AtomicLong();
+        UUID previous = UuidV7Generator.next(last, EPOCH_MILLIS);
+        for (int i = 1; i < 100; i++) {
+            UUID id = UuidV7Generator.next(last, EPOCH_MILLIS);
+
+            assertEquals(EPOCH_MILLIS, millis(id));
+            assertEquals(i, counter(id));
+            assertTrue(Long.compareUnsigned(id.getMostSignificantBits(), previous.getMostSignificantBits()) > 0);
+            previous = id;
+        }
+    }
+
+    @Test
+    void runsAheadOfTheClockWhenTheCounterOverflows() {
+        AtomicLong last = new AtomicLong();
+        for (int i = 0; i < 4096; i++) {
+            UuidV7Generator.next(last, EPOCH_MILLIS);
+        }
+
+        UUID overflowed = UuidV7Generator.next(last, EPOCH_MILLIS);
+        assertEquals(EPOCH_MILLIS + 1, millis(overflowed));
+        assertEquals(0, counter(overflowed));
+
+        // Once the clock reaches the borrowed millisecond, ids continue after the overflowed one
+        UUID caughtUp = UuidV7Generator.next(last, EPOCH_MILLIS + 1);
+        assertEquals(EPOCH_MILLIS + 1, millis(caughtUp));
+        assertEquals(1, counter(caughtUp));
+    }
+
+    @Test
+    void keepsIncreasingWhenTheClockStepsBack() {
+        AtomicLong last = new AtomicLong();
+        UUID before = UuidV7Generator.next(last, EPOCH_MILLIS);
+
+        UUID after = UuidV7Generator.next(last, EPOCH_MILLIS - 5_000);
+
+        assertEquals(EPOCH_MILLIS, millis(after));
+        assertEquals(counter(before) + 1, counter(after));
+        assertTrue(Long.compareUnsigned(after.getMostSignificantBits(), before.getMostSignificantBits()) > 0);
+    }
+
+    @Test
+    void randomBitsDifferBetweenIds() {
+        AtomicLong last = new AtomicLong();
+        UUID first = UuidV7Generator.next(last, EPOCH_MILLIS);
+        UUID second = UuidV7Generator.next(last, EPOCH_MILLIS);
+
+        assertNotEquals(first.getLeastSignificantBits(), second.getLeastSignificantBits());
+    }
+
+    private static long millis(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    private static long counter(UUID id) {
+        return id.getMostSignificantBits() & 0xFFF;
+    }
+}
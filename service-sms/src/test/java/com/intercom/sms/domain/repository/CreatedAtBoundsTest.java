@@ -0,0 +1,93 @@
+package com.intercom.sms.domain.repository;
+
+import com.intercom.sms.domain.model.UuidV7Generator;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class CreatedAtBoundsTest {
+
+    @Test
+    void boundsAUuidV7AroundItsCreationTime() {
+        LocalDateTime before = LocalDateTime.now().minusSeconds(1);
+        UUID id = UuidV7Generator.next();
+        LocalDateTime after = LocalDateTime.now().plusSeconds(1);
+
+        CreatedAtBounds bounds = CreatedAtBounds.forId(id).orElseThrow();
+        Query query = bind(bounds);
+
+        // The window is the id's timestamp plus or minus the slack, so it holds created_at
+        LocalDateTime from = captured(query, "createdFrom");
+        LocalDateTime to = captured(query, "createdTo");
+        assertEquals(CreatedAtBounds.UUID_SLACK.multipliedBy(2), Duration.between(from, to));
+        assertFalse(from.plus(CreatedAtBounds.UUID_SLACK).isBefore(before));
+        assertFalse(to.minus(CreatedAtBounds.UUID_SLACK).isAfter(after));
+    }
+
+    @Test
+    void leavesOtherUuidVersionsUnbounded() {
+        assertEquals(Optional.empty(), CreatedAtBounds.forId(UUID.randomUUID()));
+        assertEquals(Optional.empty(), CreatedAtBounds.forIds(List.of(UuidV7Generator.next(), UUID.randomUUID())));
+        assertEquals(Optional.empty(), CreatedAtBounds.forIds(List.of()));
+    }
+
+    @Test
+    void coversEveryIdOfABatch() {
+        UUID first = UuidV7Generator.next();
+        UUID last = UuidV7Generator.next();
+
+        Query query = bind(CreatedAtBounds.forIds(List.of(last, first)).orElseThrow());
+        Query firstQuery = bind(CreatedAtBounds.forId(first).orElseThrow());
+        Query lastQuery = bind(CreatedAtBounds.forId(last).orElseThrow());
+
+        assertEquals(captured(firstQuery, "createdFrom"), captured(query, "createdFrom"));
+        assertEquals(captured(lastQuery, "createdTo"), captured(query, "createdTo"));
+    }
+
+    @Test
+    void unboundedAddsNoPredicate() {
+        CreatedAtBounds none = CreatedAtBounds.none();
+        Query query = mock(Query.class, RETURNS_SELF);
+
+        none.bind(query);
+
+        assertFalse(none.isBounded());
+        assertEquals("", none.and("createdAt"));
+        verify(query, never()).setParameter(anyString(), any());
+    }
+
+    @Test
+    void predicateUsesTheGivenColumn() {
+        CreatedAtBounds bounds = CreatedAtBounds.forId(UuidV7Generator.next()).orElseThrow();
+
+        assertEquals(" AND m.created_at >= :createdFrom AND m.created_at < :createdTo", bounds.and("m.created_at"));
+    }
+
+    private static Query bind(CreatedAtBounds bounds) {
+        Query query = mock(Query.class, RETURNS_SELF);
+        bounds.bind(query);
+        return query;
+    }
+
+    private static LocalDateTime captured(Query query, String name) {
+        ArgumentCaptor<LocalDateTime> value = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(query).setParameter(eq(name), value.capture());
+        return value.getValue();
+    }
+}
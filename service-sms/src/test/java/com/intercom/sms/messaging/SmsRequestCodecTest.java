@@ -0,0 +1,84 @@
+package com.intercom.sms.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intercom.sms.domain.model.Message;
+import com.intercom.sms.domain.model.MessageStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SmsRequestCodecTest {
+
+    private static final String MESSAGE_ID = "018e4a3b-5c6d-7e8f-9a0b-1c2d3e4f5a6b";
+    private static final String SENDER = "+306912345678";
+    private static final String RECIPIENT = "+447700900123";
+    private static final String TEXT = "Καλημέρα! ✓";
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 15, 10, 30, 45, 123_000_000);
+    private static final LocalDateTime RETRY_AT = CREATED_AT.plusMinutes(5);
+
+    /*
+     * The processor decodes these same payloads in its SmsRequestCodecTest and checks every field.
+     * Changing them here means the processor must be able to read the new bytes first.
+     */
+    private static final String FIRST_SEND_HEX = "b50100"
+            + "018e4a3b5c6d7e8f9a0b1c2d3e4f5a6b"
+            + "000d2b333036393132333435363738"
+            + "000d2b343437373030393030313233"
+            + "000750454e44494e47"
+            + "0015ce9aceb1cebbceb7cebcceadcf81ceb12120e29c93"
+            + "0000018e41aa0483";
+    private static final String RETRY_HEX = "b50103"
+            + "018e4a3b5c6d7e8f9a0b1c2d3e4f5a6b"
+            + "000d2b333036393132333435363738"
+            + "000d2b343437373030393030313233"
+            + "000750454e44494e47"
+            + "0015ce9aceb1cebbceb7cebcceadcf81ceb12120e29c93"
+            + "0000018e41aa0483"
+            + "0000018e41ae9863";
+    private static final String FIRST_SEND_JSON = "{\"messageId\":\"" + MESSAGE_ID + "\",\"sender\":\"" + SENDER
+            + "\",\"recipient\":\"" + RECIPIENT + "\",\"text\":\"" + TEXT + "\",\"status\":\"PENDING\","
+            + "\"createdAt\":\"2024-03-15T10:30:45.123\"}";
+    private static final String RETRY_JSON = "{\"messageId\":\"" + MESSAGE_ID + "\",\"sender\":\"" + SENDER
+            + "\",\"recipient\":\"" + RECIPIENT + "\",\"text\":\"" + TEXT + "\",\"status\":\"PENDING\","
+            + "\"createdAt\":\"2024-03-15T10:30:45.123\",\"isRetry\":true,\"retryAt\":\"2024-03-15T10:35:45.123\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void writesTheBinaryPayloadsTheProcessorReads() {
+        assertEquals(FIRST_SEND_HEX, HexFormat.of().formatHex(SmsRequestCodec.encodeBinary(message())));
+        assertEquals(RETRY_HEX, HexFormat.of().formatHex(SmsRequestCodec.encodeBinary(message(), RETRY_AT)));
+    }
+
+    @Test
+    void writesTheJsonPayloadsTheProcessorReads() throws Exception {
+        // Key order is not part of the format
+        assertEquals(objectMapper.readTree(FIRST_SEND_JSON),
+                objectMapper.readTree(SmsRequestCodec.encodeJson(objectMapper, message())));
+        assertEquals(objectMapper.readTree(RETRY_JSON),
+                objectMapper.readTree(SmsRequestCodec.encodeJson(objectMapper, message(), RETRY_AT)));
+    }
+
+    @Test
+    void refusesToWriteAMessageWithoutText() {
+        Message message = message();
+        message.setText(null);
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> SmsRequestCodec.encodeBinary(message));
+        assertEquals("SMS request field 'text' is required", error.getMessage());
+    }
+
+    private static Message message() {
+        Message message = new Message(SENDER, RECIPIENT, TEXT);
+        message.setId(UUID.fromString(MESSAGE_ID));
+        message.setStatus(MessageStatus.PENDING);
+        message.setCreatedAt(CREATED_AT);
+        return message;
+    }
+}
@@ -0,0 +1,154 @@
+package com.intercom.sms.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalSenderRateLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000 * MILLI);
+
+    @Test
+    void admitsABurstThenPacesAtTheRate() {
+        LocalSenderRateLimiter limiter = new LocalSenderRateLimiter(10, 5, 4, clock::get);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("+1234567890"), "message " + i + " of the burst");
+        }
+        assertEquals(100, limiter.tryAcquire("+1234567890"));
+
+        clock.addAndGet(40 * MILLI);
+        assertEquals(60, limiter.tryAcquire("+1234567890"));
+
+        clock.addAndGet(60 * MILLI);
+        assertEquals(0, limiter.tryAcquire("+1234567890"));
+        assertEquals(100, limiter.tryAcquire("+1234567890"));
+    }
+
+    @Test
+    void takesSeveralPermitsAtOnceOrNone() {
+        LocalSenderRateLimiter limiter = new LocalSenderRateLimiter(10, 5, 4, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("+1234567890", 3));
+        // Two permits are left, so three are refused and none are taken
+        assertEquals(100, limiter.tryAcquire("+1234567890", 3));
+        assertEquals(0, limiter.tryAcquire("+1234567890", 2));
+        assertEquals(100, limiter.tryAcquire("+1234567890"));
+
+        // More than the burst never fits
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertTrue(limiter.tryAcquire("+1234567890", 6) > 0);
+    }
+
+    @Test
+    void limitsEachSenderSeparately() {
+        LocalSenderRateLimiter limiter = new LocalSenderRateLimiter(1, 1, 4, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("+1111111111"));
+        assertEquals(0, limiter.tryAcquire("+2222222222"));
+        assertEquals(1000, limiter.tryAcquire("+1111111111"));
+    }
+
+    @Test
+    void refillsToTheBurstAfterIdling() {
+        LocalSenderRateLimiter limiter = new LocalSenderRateLimiter(10, 3, 4, clock::get);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("+1234567890");
+        }
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("+1234567890"));
+        }
+        assertTrue(limiter.tryAcquire("+1234567890") > 0);
+    }
+
+    @Test
+    void roundsWaitsUpToWholeMillisecondsAndSeconds() {
+        // 3 per second: a 333.33 ms interval
+        LocalSenderRateLimiter limiter = new LocalSenderRateLimiter(3, 1, 4, clock::get);
+        assertEquals(0, limiter.tryAcquire("+1234567890"));
+        assertEquals(334, limiter.tryAcquire("+1234567890"));
+
+        assertEquals(1, SenderRateLimiter.retryAfterSeconds(0));
+        assertEquals(1, SenderRateLimiter.retryAfterSeconds(1));
+        assertEquals(1, SenderRateLimiter.retryAfterSeconds(334));
+        assertEquals(1, SenderRateLimiter.retryAfterSeconds(1000));
+        assertEquals(2, SenderRateLimiter.retryAfterSeconds(1001));
+        assertEquals(3, SenderRateLimiter.retryAfterSeconds(2500));
+    }
+
+    @Test
+    void sweepDropsOnlyFullBuckets() {
+        LocalSenderRateLimiter limiter = new LocalSenderRateLimiter(10, 2, 4, clock::get);
+        limiter.tryAcquire("+1111111111");
+        limiter.tryAcquire("+2222222222");
+        limiter.tryAcquire("+2222222222");
+        assertEquals(2, limiter.size());
+
+        // After 100 ms the first sender's bucket is full again, the second one's is not
+        clock.addAndGet(100 * MILLI);
+        assertEquals(1, sweepAll(limiter));
+        assertEquals(1, limiter.size());
+
+        // The swept sender starts over with a full burst
+        assertEquals(0, limiter.tryAcquire("+1111111111"));
+        assertEquals(0, limiter.tryAcquire("+1111111111"));
+        assertTrue(limiter.tryAcquire("+1111111111") > 0);
+        // The kept sender has regained the one permit those 100 ms are worth
+        assertEquals(0, limiter.tryAcquire("+2222222222"));
+        assertTrue(limiter.tryAcquire("+2222222222") > 0);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, sweepAll(limiter));
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    void acquireThatLosesItsBucketToASweepStartsOver() {
+        int burst = 3;
+        AtomicReference<Runnable> onNextClockRead = new AtomicReference<>();
+        LongSupplier interleavingClock = () -> {
+            Runnable interleaved = onNextClockRead.getAndSet(null);
+            if (interleaved != null) {
+                interleaved.run();
+            }
+            return clock.get();
+        };
+        // One stripe, so every sweep() visits the sender's bucket
+        LocalSenderRateLimiter limiter = new LocalSenderRateLimiter(10, burst, 1, interleavingClock);
+        assertEquals(0, limiter.tryAcquire("+1234567890"));
+        clock.addAndGet(100 * MILLI);
+
+        // The acquirer has looked the (now full) bucket up when a sweep removes it
+        AtomicInteger swept = new AtomicInteger();
+        onNextClockRead.set(() -> swept.set(limiter.sweep()));
+        assertEquals(0, limiter.tryAcquire("+1234567890"));
+        assertEquals(1, swept.get());
+
+        // The permit was taken from a new bucket, not the swept one, so the burst is not granted twice
+        assertEquals(1, limiter.size());
+        for (int i = 1; i < burst; i++) {
+            assertEquals(0, limiter.tryAcquire("+1234567890"));
+        }
+        assertEquals(100, limiter.tryAcquire("+1234567890"));
+    }
+
+    private static int sweepAll(LocalSenderRateLimiter limiter) {
+        int removed = 0;
+        for (int i = 0; i < 4; i++) {
+            removed += limiter.sweep();
+        }
+        return removed;
+    }
+}
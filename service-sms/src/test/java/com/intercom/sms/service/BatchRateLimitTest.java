@@ -0,0 +1,118 @@
+package com.intercom.sms.service;
+
+import com.intercom.sms.api.dto.BatchItemResult;
+import com.intercom.sms.api.dto.BatchSendMessageResponse;
+import com.intercom.sms.api.dto.SendMessageRequest;
+import com.intercom.sms.domain.repository.MessageRepository;
+import com.intercom.sms.domain.repository.OutboxRepository;
+import com.intercom.sms.ratelimit.LocalSenderRateLimiter;
+import com.intercom.sms.ratelimit.RateLimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.enterprise.event.Event;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A batch takes one permit per valid item, charged at once: it is sent in full or rejected as a whole
+ */
+class BatchRateLimitTest {
+
+    private static final String SENDER = "+1234567890";
+
+    private MessageService messageService;
+    private MessageRepository messageRepository;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        messageRepository = mock(MessageRepository.class);
+        Validator validator = mock(Validator.class);
+        when(validator.validate(any(SendMessageRequest.class))).thenReturn(Set.of());
+
+        messageService = new MessageService();
+        messageService.messageRepository = messageRepository;
+        messageService.outboxRepository = mock(OutboxRepository.class);
+        messageService.validator = validator;
+        messageService.meterRegistry = new SimpleMeterRegistry();
+        messageService.created = mock(Event.class);
+        // Slow enough that no permit comes back while a test runs
+        messageService.rateLimiter = new LocalSenderRateLimiter(0.01, 10, 4);
+    }
+
+    @Test
+    void acceptsAFullBurstInOneBatch() {
+        BatchSendMessageResponse response = messageService.sendMessageBatch(batch(SENDER, 10));
+
+        assertEquals(10, response.getAcceptedCount());
+        assertEquals(0, response.getRejectedCount());
+        verify(messageRepository).persist(anyIterable());
+    }
+
+    @Test
+    void rejectsTheWholeBatchWhenTheSenderIsShortOfPermits() {
+        messageService.sendMessageBatch(batch(SENDER, 8));
+
+        RateLimitExceededException error = assertThrows(RateLimitExceededException.class,
+                () -> messageService.sendMessageBatch(batch(SENDER, 3)));
+
+        assertEquals(SENDER, error.getSender());
+        assertTrue(error.getWaitMillis() > 0);
+        // Only the first batch was written, and the rejected one took no permits
+        verify(messageRepository, times(1)).persist(anyIterable());
+        assertEquals(2, messageService.sendMessageBatch(batch(SENDER, 2)).getAcceptedCount());
+    }
+
+    @Test
+    void rejectsABatchLargerThanTheBurst() {
+        assertThrows(RateLimitExceededException.class, () -> messageService.sendMessageBatch(batch(SENDER, 11)));
+
+        assertEquals(10, messageService.sendMessageBatch(batch(SENDER, 10)).getAcceptedCount());
+    }
+
+    @Test
+    void chargesOnlyValidItems() {
+        List<SendMessageRequest> requests = batch(SENDER, 10);
+        requests.add(3, null);
+        requests.add(null);
+
+        BatchSendMessageResponse response = messageService.sendMessageBatch(requests);
+
+        assertEquals(10, response.getAcceptedCount());
+        assertEquals(BatchItemResult.REJECTED, response.getResults().get(3).getResult());
+        assertEquals(BatchItemResult.REJECTED, response.getResults().get(11).getResult());
+    }
+
+    @Test
+    void chargesEachSenderForItsOwnItems() {
+        List<SendMessageRequest> requests = batch(SENDER, 10);
+        requests.addAll(batch("+1987654321", 10));
+
+        assertEquals(20, messageService.sendMessageBatch(requests).getAcceptedCount());
+        assertThrows(RateLimitExceededException.class, () -> messageService.sendMessageBatch(batch(SENDER, 1)));
+        assertThrows(RateLimitExceededException.class,
+                () -> messageService.sendMessageBatch(batch("+1987654321", 1)));
+    }
+
+    private static List<SendMessageRequest> batch(String sender, int size) {
+        List<SendMessageRequest> requests = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            requests.add(new SendMessageRequest(sender, "+1555000" + String.format("%04d", i), "Message " + i));
+        }
+        return requests;
+    }
+}
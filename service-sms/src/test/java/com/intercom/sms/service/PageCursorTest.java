@@ -0,0 +1,79 @@
+package com.intercom.sms.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PageCursorTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 3, 15, 10, 30, 45, 123_456_789);
+    private static final UUID ID = UUID.fromString("01a14854-48ae-7000-be49-6444cdef3edb");
+
+    @Test
+    void roundTripsTimestampAndId() {
+        String encoded = new PageCursor(PageCursor.SortKey.UPDATED_AT, TIMESTAMP, ID).encode();
+
+        PageCursor decoded = PageCursor.decode(encoded, PageCursor.SortKey.UPDATED_AT);
+
+        assertEquals(PageCursor.SortKey.UPDATED_AT, decoded.getSortKey());
+        assertEquals(TIMESTAMP, decoded.getTimestamp());
+        assertEquals(ID, decoded.getId());
+    }
+
+    @Test
+    void encodesTo29BytesOfUrlSafeBase64() {
+        String encoded = new PageCursor(PageCursor.SortKey.CREATED_AT, TIMESTAMP, ID).encode();
+
+        assertEquals(29, Base64.getUrlDecoder().decode(encoded).length);
+        assertEquals(-1, encoded.indexOf('='));
+        assertEquals(-1, encoded.indexOf('+'));
+        assertEquals(-1, encoded.indexOf('/'));
+    }
+
+    @Test
+    void rejectsCursorOfAnotherListing() {
+        String encoded = new PageCursor(PageCursor.SortKey.CREATED_AT, TIMESTAMP, ID).encode();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> PageCursor.decode(encoded, PageCursor.SortKey.UPDATED_AT));
+    }
+
+    @Test
+    void rejectsMalformedBase64() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PageCursor.decode("not a cursor!", PageCursor.SortKey.CREATED_AT));
+        assertThrows(IllegalArgumentException.class,
+                () -> PageCursor.decode("abcde", PageCursor.SortKey.CREATED_AT));
+    }
+
+    @Test
+    void rejectsTruncatedCursor() {
+        String encoded = new PageCursor(PageCursor.SortKey.CREATED_AT, TIMESTAMP, ID).encode();
+        String truncated = encoded.substring(0, encoded.length() - 4);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> PageCursor.decode(truncated, PageCursor.SortKey.CREATED_AT));
+        assertThrows(IllegalArgumentException.class,
+                () -> PageCursor.decode("", PageCursor.SortKey.CREATED_AT));
+    }
+
+    @Test
+    void rejectsOutOfRangeTimestamp() {
+        ByteBuffer buffer = ByteBuffer.allocate(29);
+        buffer.put((byte) PageCursor.SortKey.CREATED_AT.ordinal());
+        buffer.putLong(Long.MAX_VALUE);
+        buffer.putInt(0);
+        buffer.putLong(ID.getMostSignificantBits());
+        buffer.putLong(ID.getLeastSignificantBits());
+        String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> PageCursor.decode(encoded, PageCursor.SortKey.CREATED_AT));
+    }
+}